@@ -0,0 +1,104 @@
+package ro.adma;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Routing a request path with the generated trie router against matching it linearly with one regular expression
+ * per url: property, as the framework does with the system properties.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouterBenchmark {
+
+    @Param({"100", "1000"})
+    private int routes;
+
+    private final List<Pattern> patterns = new ArrayList<>();
+    private final List<String> classNames = new ArrayList<>();
+    private MethodHandle router;
+    private String[] paths;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        UrlTrie trie = new UrlTrie();
+        List<String> samplePaths = new ArrayList<>();
+        for (int i = 0; patterns.size() < routes; i++) {
+            String base = "/do/module" + (i % 20) + "/entity" + i;
+            String[][] routeSet = {
+                    {base, base},
+                    {base + "/{id}", base + "/" + i},
+                    {base + "/{id}/edit", base + "/" + i + "/edit"},
+            };
+            for (String[] route : routeSet) {
+                String className = "com.example.controller.Entity" + i + "Controller";
+                trie.add(route[0], className);
+                patterns.add(Pattern.compile(route[0].replaceAll("\\{[^/]+\\}", "([^/]+)")));
+                classNames.add(className);
+                samplePaths.add(route[1]);
+            }
+        }
+        Collections.shuffle(samplePaths, new Random(42));
+        paths = samplePaths.toArray(new String[samplePaths.size()]);
+
+        File work = Files.createTempDirectory("router-benchmark").toFile();
+        SourceCompiler compiler = new SourceCompiler(new SystemStreamLog(), new File(work, "src"), new File(work, "classes"),
+                Collections.<String>emptyList());
+        compiler.add("bench.UrlRouter", trie.toJavaSource("bench.UrlRouter"));
+        compiler.compile();
+        ClassLoader loader = new URLClassLoader(new URL[]{new File(work, "classes").toURI().toURL()});
+        Class<?> routerClass = loader.loadClass("bench.UrlRouter");
+        Class<?> matchClass = loader.loadClass("bench.UrlRouter$Match");
+        router = MethodHandles.publicLookup().findStatic(routerClass, "route", MethodType.methodType(matchClass, String.class))
+                .asType(MethodType.methodType(Object.class, String.class));
+    }
+
+    private String nextPath() {
+        String path = paths[next];
+        next = next + 1 == paths.length ? 0 : next + 1;
+        return path;
+    }
+
+    @Benchmark
+    public Object trie() throws Throwable {
+        return (Object) router.invokeExact(nextPath());
+    }
+
+    @Benchmark
+    public Object linear(Blackhole blackhole) {
+        String path = nextPath();
+        for (int i = 0; i < patterns.size(); i++) {
+            Matcher matcher = patterns.get(i).matcher(path);
+            if (matcher.matches()) {
+                String[] values = new String[matcher.groupCount()];
+                for (int group = 0; group < values.length; group++) {
+                    values[group] = matcher.group(group + 1);
+                }
+                blackhole.consume(values);
+                return classNames.get(i);
+            }
+        }
+        return null;
+    }
+}
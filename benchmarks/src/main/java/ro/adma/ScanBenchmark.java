@@ -0,0 +1,224 @@
+package ro.adma;
+
+import org.apache.maven.monitor.logging.DefaultLog;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The goal's pipeline on a {@link SyntheticClassPath}: scanning class directories and jars, extracting class
+ * annotations, resolving the servlet and controller subtypes and generating the descriptors. Run with the GC
+ * profiler ({@code -prof gc}, or through {@link #main}) to get the allocation rate next to the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ScanBenchmark {
+    private static final String START_MARK = "<!-- Generated servlet mapping -->";
+    private static final String END_MARK = "<!-- End Generated servlet mapping -->";
+
+    @Param({"1000", "10000", "100000"})
+    private int classes;
+
+    @Param({"0.05"})
+    private double servletShare;
+
+    @Param({"0.2"})
+    private double controllerShare;
+
+    @Param({"0.8"})
+    private double annotatedShare;
+
+    private File work;
+    private List<URL> urls;
+    private List<byte[]> classFiles;
+    private List<ClassSummary> summaries;
+    private ScanResult result;
+    private File webXml;
+    private OutputTarget target;
+    // the goal logs each skipped servlet
+    private final Log log = new DefaultLog(new ConsoleLogger(Logger.LEVEL_DISABLED, "benchmark"));
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        work = Files.createTempDirectory("scan-benchmark").toFile();
+        urls = new SyntheticClassPath(classes, servletShare, controllerShare, annotatedShare).write(work);
+        classFiles = readClassFiles(urls);
+        summaries = new ArrayList<>(classFiles.size());
+        ClassFileReader reader = new ClassFileReader();
+        for (byte[] classFile : classFiles) {
+            summaries.add(reader.read(new ByteArrayInputStream(classFile)));
+        }
+        result = scan(true);
+        webXml = new File(work, "web.xml");
+        Files.write(webXml.toPath(), ("<web-app>\n    " + START_MARK + "\n    " + END_MARK + "\n</web-app>\n")
+                .getBytes(StandardCharsets.UTF_8));
+        target = new OutputTarget("benchmark", work.getPath(), Collections.singletonList(SyntheticClassPath.CONTROLLER),
+                SyntheticClassPath.URL_PATTERN, SyntheticClassPath.REQUIRED_TYPE, "SuperAdministrator",
+                Collections.<String>emptyList());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        delete(work);
+    }
+
+    private ScanResult scan(boolean classFileReader) throws IOException {
+        ClassPathScanner scanner = new ClassPathScanner(null, new ClassIndex(""));
+        if (classFileReader) {
+            scanner.useClassFileReader();
+        }
+        return scanner.scan(urls);
+    }
+
+    @Benchmark
+    public ScanResult scanClassFileReader() throws IOException {
+        return scan(true);
+    }
+
+    @Benchmark
+    public ScanResult scanJavassist() throws IOException {
+        return scan(false);
+    }
+
+    @Benchmark
+    public int extractClassFileReader() throws IOException {
+        ClassFileReader reader = new ClassFileReader();
+        int annotations = 0;
+        for (byte[] classFile : classFiles) {
+            annotations += reader.read(new ByteArrayInputStream(classFile)).getAnnotations().size();
+        }
+        return annotations;
+    }
+
+    @Benchmark
+    public int extractJavassist() throws IOException {
+        int annotations = 0;
+        for (byte[] classFile : classFiles) {
+            annotations += ClassSummary.parse(new ByteArrayInputStream(classFile)).getAnnotations().size();
+        }
+        return annotations;
+    }
+
+    @Benchmark
+    public TypeHierarchy buildHierarchy() {
+        ScanResult built = new ScanResult();
+        for (ClassSummary summary : summaries) {
+            built.add(summary);
+        }
+        return built.getHierarchy();
+    }
+
+    @Benchmark
+    public int resolveSubTypes() {
+        return result.getSubTypesOf(SyntheticClassPath.CONTROLLER).size()
+                + result.getSubTypesOf(SyntheticClassPath.HTTP_SERVLET).size();
+    }
+
+    /**
+     * The goal's generation loops, through {@link MappingGenerator}: url map entries for the controllers, servlet
+     * mappings for the servlets and the security constraint count, then the url map resource and the web.xml block
+     * written between its markers. After the first invocation the block is unchanged, so the write is the comparison
+     * an up-to-date build does.
+     */
+    @Benchmark
+    public int generate() throws IOException {
+        MappingGenerator generator = new MappingGenerator(log, target, result.getAnnotations(), false);
+        String ls = "\n";
+        StringBuilder strAppengineWebXml = new StringBuilder(ls);
+        StringBuilder strWebXml = new StringBuilder(ls);
+        generator.addControllers(result.getSubTypesOf(SyntheticClassPath.CONTROLLER), ls, strAppengineWebXml);
+        byte[] urlMapResource = UrlMapResource.toBytes(generator.getUrlMap());
+        generator.addServlets(result.getSubTypesOf(SyntheticClassPath.HTTP_SERVLET), ls, strWebXml);
+        generator.countSecurityConstraints(result.getSubTypesOf(SyntheticClassPath.CONTROLLER));
+
+        DescriptorWriter descriptor = DescriptorWriter.open(webXml, START_MARK, END_MARK);
+        descriptor.write(descriptor.indexOf(START_MARK) + START_MARK.length(), "", strWebXml, "    ", descriptor.indexOf(END_MARK));
+        return urlMapResource.length + strWebXml.length() + generator.getSecurityConstraintCounter();
+    }
+
+    private static List<byte[]> readClassFiles(List<URL> urls) throws IOException {
+        List<byte[]> classFiles = new ArrayList<>();
+        for (URL url : urls) {
+            File file = ClassPathScanner.toFile(url);
+            if (file.isDirectory()) {
+                readClassFiles(file, classFiles);
+            } else {
+                try (ZipFile jar = new ZipFile(file)) {
+                    Enumeration<? extends ZipEntry> entries = jar.entries();
+                    while (entries.hasMoreElements()) {
+                        ZipEntry entry = entries.nextElement();
+                        if (entry.getName().endsWith(".class")) {
+                            try (InputStream in = jar.getInputStream(entry)) {
+                                classFiles.add(readFully(in));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return classFiles;
+    }
+
+    private static void readClassFiles(File directory, List<byte[]> classFiles) throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                readClassFiles(file, classFiles);
+            } else if (file.getName().endsWith(".class")) {
+                classFiles.add(Files.readAllBytes(file.toPath()));
+            }
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Runs this benchmark with the GC profiler; arguments are passed on as an include pattern, e.g.
+     * {@code ScanBenchmark.scan.*}.
+     */
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : ScanBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,229 @@
+package ro.adma;
+
+import java.io.*;
+import java.net.URL;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a synthetic webapp class path: servlets and controllers in a class directory, the other classes in jars
+ * of 1,000 classes each. Servlets extend {@code HttpServlet}; controllers extend one of a few base controllers
+ * extending {@code AbstractIController}, so subtype resolution has to go two levels deep. A share of both carries a
+ * {@code UrlPattern} annotation, some controllers a {@code RequiredType}, and every library class an annotation
+ * the goal does not look for.
+ * <p>
+ * The class files only have a constant pool, supertypes and class annotations, which is all a scan reads. They
+ * are built from a fixed seed, so a size always produces the same class path.
+ */
+class SyntheticClassPath {
+    static final String HTTP_SERVLET = "javax.servlet.http.HttpServlet";
+    static final String CONTROLLER = "ro.appenigne.web.framework.servlet.AbstractIController";
+    static final String URL_PATTERN = "ro.appenigne.web.framework.annotation.UrlPattern";
+    static final String REQUIRED_TYPE = "ro.appenigne.web.framework.annotation.RequiredType";
+    private static final String OTHER_ANNOTATION = "com.example.annotation.Generated";
+    private static final int CLASSES_PER_JAR = 1000;
+    private static final int BASE_CONTROLLERS = 8;
+
+    private final int classes;
+    private final double servletShare;
+    private final double controllerShare;
+    private final double annotatedShare;
+
+    SyntheticClassPath(int classes, double servletShare, double controllerShare, double annotatedShare) {
+        this.classes = classes;
+        this.servletShare = servletShare;
+        this.controllerShare = controllerShare;
+        this.annotatedShare = annotatedShare;
+    }
+
+    /**
+     * Writes {@code classes/} and {@code lib/*.jar} under the directory and returns their urls.
+     */
+    List<URL> write(File directory) throws IOException {
+        File classDirectory = new File(directory, "classes");
+        File libDirectory = new File(directory, "lib");
+        if (!libDirectory.isDirectory() && !libDirectory.mkdirs()) {
+            throw new IOException("Could not create " + libDirectory);
+        }
+        Random random = new Random(42);
+        writeClass(classDirectory, CONTROLLER, "java.lang.Object", null, null);
+        for (int i = 0; i < BASE_CONTROLLERS; i++) {
+            writeClass(classDirectory, "com.example.controller.BaseController" + i, CONTROLLER, null, null);
+        }
+        int servlets = (int) (classes * servletShare);
+        int controllers = (int) (classes * controllerShare);
+        for (int i = 0; i < servlets; i++) {
+            String name = "com.example.servlet.module" + (i % 50) + ".Servlet" + i;
+            writeClass(classDirectory, name, HTTP_SERVLET, urlPatterns(random, "/servlet/" + i), null);
+        }
+        for (int i = 0; i < controllers; i++) {
+            String name = "com.example.controller.module" + (i % 50) + ".Entity" + i + "Controller";
+            String requiredType = random.nextInt(10) == 0 ? "SuperAdministrator" : null;
+            writeClass(classDirectory, name, "com.example.controller.BaseController" + (i % BASE_CONTROLLERS),
+                    urlPatterns(random, "/do/entity" + i), requiredType);
+        }
+        int libraryClasses = Math.max(0, classes - servlets - controllers - 1 - BASE_CONTROLLERS);
+        ZipOutputStream jar = null;
+        try {
+            for (int i = 0; i < libraryClasses; i++) {
+                if (i % CLASSES_PER_JAR == 0) {
+                    if (jar != null) {
+                        jar.close();
+                    }
+                    jar = new ZipOutputStream(new FileOutputStream(new File(libDirectory, "lib" + i / CLASSES_PER_JAR + ".jar")));
+                }
+                String name = "com.example.library" + i / CLASSES_PER_JAR + ".p" + (i % 20) + ".Type" + i;
+                String superName = i % 5 == 0 ? "java.util.AbstractList" : "java.lang.Object";
+                Map<String, String[]> annotations = new LinkedHashMap<>();
+                annotations.put(OTHER_ANNOTATION, new String[]{"library " + i});
+                jar.putNextEntry(new ZipEntry(name.replace('.', '/') + ".class"));
+                jar.write(classFile(name, superName, new String[]{"java.io.Serializable"}, annotations));
+                jar.closeEntry();
+            }
+        } finally {
+            if (jar != null) {
+                jar.close();
+            }
+        }
+        List<URL> urls = new ArrayList<>();
+        urls.add(classDirectory.toURI().toURL());
+        File[] jars = libDirectory.listFiles();
+        if (jars != null) {
+            Arrays.sort(jars);
+            for (File file : jars) {
+                urls.add(file.toURI().toURL());
+            }
+        }
+        return urls;
+    }
+
+    private String[] urlPatterns(Random random, String path) {
+        if (random.nextDouble() >= annotatedShare) {
+            return null;
+        }
+        return random.nextInt(4) == 0 ? new String[]{path, path + "/{id}"} : new String[]{path};
+    }
+
+    private static void writeClass(File classDirectory, String name, String superName, String[] urlPatterns,
+                                   String requiredType) throws IOException {
+        Map<String, String[]> annotations = new LinkedHashMap<>();
+        if (urlPatterns != null) {
+            annotations.put(URL_PATTERN, urlPatterns);
+        }
+        if (requiredType != null) {
+            annotations.put(REQUIRED_TYPE, new String[]{requiredType});
+        }
+        File file = new File(classDirectory, name.replace('.', '/') + ".class");
+        File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(classFile(name, superName, null, annotations));
+        }
+    }
+
+    /**
+     * A public class file with the given supertypes and class annotations whose {@code value} is a string array.
+     */
+    static byte[] classFile(String name, String superName, String[] interfaces, Map<String, String[]> annotations)
+            throws IOException {
+        ConstantPool pool = new ConstantPool();
+        int thisClass = pool.classRef(name);
+        int superClass = pool.classRef(superName);
+        int[] interfaceRefs = new int[interfaces != null ? interfaces.length : 0];
+        for (int i = 0; i < interfaceRefs.length; i++) {
+            interfaceRefs[i] = pool.classRef(interfaces[i]);
+        }
+        ByteArrayOutputStream attribute = new ByteArrayOutputStream();
+        DataOutputStream annotationsOut = new DataOutputStream(attribute);
+        annotationsOut.writeShort(annotations.size());
+        for (Map.Entry<String, String[]> annotation : annotations.entrySet()) {
+            annotationsOut.writeShort(pool.utf8("L" + annotation.getKey().replace('.', '/') + ";"));
+            annotationsOut.writeShort(1);
+            annotationsOut.writeShort(pool.utf8("value"));
+            annotationsOut.writeByte('[');
+            annotationsOut.writeShort(annotation.getValue().length);
+            for (String value : annotation.getValue()) {
+                annotationsOut.writeByte('s');
+                annotationsOut.writeShort(pool.utf8(value));
+            }
+        }
+        int attributeName = annotations.isEmpty() ? 0 : pool.utf8("RuntimeVisibleAnnotations");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(50);
+        pool.writeTo(out);
+        out.writeShort(0x21);
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(interfaceRefs.length);
+        for (int interfaceRef : interfaceRefs) {
+            out.writeShort(interfaceRef);
+        }
+        out.writeShort(0);
+        out.writeShort(0);
+        if (annotations.isEmpty()) {
+            out.writeShort(0);
+        } else {
+            out.writeShort(1);
+            out.writeShort(attributeName);
+            out.writeInt(attribute.size());
+            attribute.writeTo(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static class ConstantPool {
+        private final Map<String, Integer> utf8 = new HashMap<>();
+        private final Map<String, Integer> classes = new HashMap<>();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private int count = 1;
+
+        int utf8(String value) throws IOException {
+            Integer index = utf8.get(value);
+            if (index == null) {
+                out.writeByte(1);
+                out.writeUTF(value);
+                index = count++;
+                utf8.put(value, index);
+            }
+            return index;
+        }
+
+        int classRef(String className) throws IOException {
+            Integer index = classes.get(className);
+            if (index == null) {
+                int nameIndex = utf8(className.replace('.', '/'));
+                out.writeByte(7);
+                out.writeShort(nameIndex);
+                index = count++;
+                classes.put(className, index);
+            }
+            return index;
+        }
+
+        void writeTo(DataOutputStream target) throws IOException {
+            target.writeShort(count);
+            bytes.writeTo(target);
+        }
+    }
+
+    /**
+     * Writes a class path to disk: {@code <directory> <classes> [servletShare controllerShare annotatedShare]}.
+     */
+    public static void main(String[] args) throws IOException {
+        File directory = new File(args[0]);
+        int classes = Integer.parseInt(args[1]);
+        SyntheticClassPath classPath = new SyntheticClassPath(classes,
+                args.length > 2 ? Double.parseDouble(args[2]) : 0.05,
+                args.length > 3 ? Double.parseDouble(args[3]) : 0.2,
+                args.length > 4 ? Double.parseDouble(args[4]) : 0.8);
+        System.out.println(classPath.write(directory).size() + " class path entries written to " + directory);
+    }
+}
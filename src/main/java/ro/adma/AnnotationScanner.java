@@ -7,7 +7,19 @@ import javassist.bytecode.ClassFile;
 import javassist.bytecode.annotation.*;
 import org.reflections.scanners.AbstractScanner;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class AnnotationScanner extends AbstractScanner {
+    private final AnnotationStore annotationStore;
+
+    public AnnotationScanner() {
+        this(null);
+    }
+
+    AnnotationScanner(AnnotationStore annotationStore) {
+        this.annotationStore = annotationStore;
+    }
 
     public void scan(final Object cls) {
         if (cls instanceof ClassFile) {
@@ -28,24 +40,36 @@ public class AnnotationScanner extends AbstractScanner {
         }
     }
     private void getMemberValue(String className, String typeName, MemberValue memberValue){
+        List<String> values = new ArrayList<>();
+        memberValues(memberValue, values);
+        for (String value : values) {
+            if (annotationStore != null) {
+                annotationStore.put(className, typeName, value);
+            } else {
+                getStore().put(className+"|"+typeName, value);
+            }
+        }
+    }
+
+    static void memberValues(MemberValue memberValue, List<String> values){
         if(memberValue instanceof StringMemberValue){
-            getStore().put(className+"|"+typeName, String.valueOf(((StringMemberValue) memberValue).getValue()));
+            values.add(String.valueOf(((StringMemberValue) memberValue).getValue()));
         } else if(memberValue instanceof ClassMemberValue) {
             ClassMemberValue classMemberValue = ((ClassMemberValue) memberValue);
-            getStore().put(className+"|"+typeName, String.valueOf(classMemberValue.getValue()));
+            values.add(String.valueOf(classMemberValue.getValue()));
         } else if(memberValue instanceof BooleanMemberValue){
             boolean value = ((BooleanMemberValue) memberValue).getValue();
-            getStore().put(className+"|"+typeName, String.valueOf(value));
+            values.add(String.valueOf(value));
         } else if(memberValue instanceof ArrayMemberValue) {
             ArrayMemberValue classMemberValue = ((ArrayMemberValue) memberValue);
             MemberValue[] value = classMemberValue.getValue();
             for(MemberValue val:value){
-               getMemberValue(className, typeName, val);
+               memberValues(val, values);
             }
         } else if(memberValue instanceof EnumMemberValue){
             EnumMemberValue classMemberValue = ((EnumMemberValue) memberValue);
-            getStore().put(className+"|"+typeName, classMemberValue.getValue());
-        } else {
+            values.add(classMemberValue.getValue());
+        } else if(memberValue != null) {
             System.out.print(memberValue.getClass().getName());
         }
     }
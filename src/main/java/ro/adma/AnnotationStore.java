@@ -0,0 +1,188 @@
+package ro.adma;
+
+import java.util.*;
+
+/**
+ * Annotation values by class and annotation type, replacing the {@code "className|typeName"} keyed multimap.
+ * <p>
+ * Class names, annotation types and values are interned to int ids. The (class, type) pairs live in an
+ * open-addressing table of long keys pointing at the head of a chain of value ids, kept in insertion order and
+ * without duplicates like the multimap was. Callers resolve the ids once and query without building strings.
+ */
+class AnnotationStore {
+    private final Map<String, Integer> classIds = new HashMap<>();
+    private final Map<String, Integer> typeIds = new HashMap<>();
+    private final Map<String, Integer> valueIds = new HashMap<>();
+    private String[] values = new String[64];
+
+    private long[] keys = new long[64];
+    private int[] heads = new int[64];
+    private int[] tails = new int[64];
+    private int pairs;
+
+    // value chain: entries[i] is a value id, links[i] the next entry of the same pair or -1
+    private int[] entries = new int[64];
+    private int[] links = new int[64];
+    private int entryCount;
+
+    AnnotationStore() {
+        Arrays.fill(heads, -1);
+    }
+
+    synchronized void put(String className, String typeName, String value) {
+        long key = key(intern(classIds, className), intern(typeIds, typeName));
+        int valueId = internValue(value);
+        int slot = slot(key);
+        if (heads[slot] == -1) {
+            keys[slot] = key;
+            heads[slot] = tails[slot] = newEntry(valueId);
+            if (++pairs * 2 > keys.length) {
+                rehash();
+            }
+            return;
+        }
+        for (int entry = heads[slot]; entry != -1; entry = links[entry]) {
+            if (entries[entry] == valueId) {
+                return;
+            }
+        }
+        int entry = newEntry(valueId);
+        links[tails[slot]] = entry;
+        tails[slot] = entry;
+    }
+
+    int classId(String className) {
+        Integer id = classIds.get(className);
+        return id != null ? id : -1;
+    }
+
+    int typeId(String typeName) {
+        Integer id = typeIds.get(typeName);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Adds the values stored for the class and annotation type ids to the collection and returns how many there were.
+     */
+    int addValues(int classId, int typeId, Collection<String> result) {
+        if (classId < 0 || typeId < 0) {
+            return 0;
+        }
+        int slot = slot(key(classId, typeId));
+        int count = 0;
+        for (int entry = heads[slot]; entry != -1; entry = links[entry]) {
+            result.add(values[entries[entry]]);
+            count++;
+        }
+        return count;
+    }
+
+    int countValues(int classId, int typeId) {
+        if (classId < 0 || typeId < 0) {
+            return 0;
+        }
+        int count = 0;
+        for (int entry = heads[slot(key(classId, typeId))]; entry != -1; entry = links[entry]) {
+            count++;
+        }
+        return count;
+    }
+
+    String firstValue(int classId, int typeId) {
+        if (classId < 0 || typeId < 0) {
+            return null;
+        }
+        int head = heads[slot(key(classId, typeId))];
+        return head != -1 ? values[entries[head]] : null;
+    }
+
+    int getClassCount() {
+        return classIds.size();
+    }
+
+    int getValueCount() {
+        return entryCount;
+    }
+
+    /**
+     * Rough retained size of the tables, for comparing against the multimap it replaces.
+     */
+    long estimatedBytes() {
+        long bytes = (long) keys.length * (8 + 4 + 4) + (long) entries.length * (4 + 4) + (long) values.length * 4;
+        for (Map<String, Integer> ids : Arrays.asList(classIds, typeIds, valueIds)) {
+            for (String string : ids.keySet()) {
+                // map entry, boxed id and the string itself
+                bytes += 32 + 16 + 40 + 2L * string.length();
+            }
+        }
+        return bytes;
+    }
+
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (heads[slot] != -1 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldHeads = heads;
+        int[] oldTails = tails;
+        keys = new long[oldKeys.length * 2];
+        heads = new int[oldKeys.length * 2];
+        tails = new int[oldKeys.length * 2];
+        Arrays.fill(heads, -1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldHeads[i] != -1) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                heads[slot] = oldHeads[i];
+                tails[slot] = oldTails[i];
+            }
+        }
+    }
+
+    private int newEntry(int valueId) {
+        if (entryCount == entries.length) {
+            entries = Arrays.copyOf(entries, entryCount * 2);
+            links = Arrays.copyOf(links, entryCount * 2);
+        }
+        entries[entryCount] = valueId;
+        links[entryCount] = -1;
+        return entryCount++;
+    }
+
+    private int internValue(String value) {
+        Integer id = valueIds.get(value);
+        if (id == null) {
+            id = valueIds.size();
+            if (id == values.length) {
+                values = Arrays.copyOf(values, id * 2);
+            }
+            values[id] = value;
+            valueIds.put(value, id);
+        }
+        return id;
+    }
+
+    private static int intern(Map<String, Integer> ids, String string) {
+        Integer id = ids.get(string);
+        if (id == null) {
+            id = ids.size();
+            ids.put(string, id);
+        }
+        return id;
+    }
+
+    private static long key(int classId, int typeId) {
+        return ((long) classId << 32) | (typeId & 0xffffffffL);
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,265 @@
+package ro.adma;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Builds the scan set from the project's resolved dependency artifacts.
+ * <p>
+ * Artifacts are filtered by scope and by groupId:artifactId allow/deny patterns ({@code *} matches anything).
+ * When pruning, a jar is kept only if it is one of the marker artifacts (the servlet API or the framework) or if
+ * it depends on one, directly or through other resolved artifacts. The dependencies come from the resolved graph,
+ * through each artifact's dependency trail, and from the pom embedded under META-INF/maven, which still names the
+ * dependencies conflict resolution took out of the graph. Jars without a trail whose pom is missing or inherits from
+ * a parent are always kept, since their dependencies cannot be known.
+ */
+class ArtifactClasspath {
+    private final Log log;
+    private final Set<String> scopes;
+    private final List<Pattern> includes;
+    private final List<Pattern> excludes;
+    private final List<Pattern> markers;
+    private final boolean prune;
+    private int excluded;
+    private int pruned;
+
+    ArtifactClasspath(Log log, Collection<String> scopes, Collection<String> includes, Collection<String> excludes,
+                      Collection<String> markers, boolean prune) {
+        this.log = log;
+        this.scopes = new HashSet<>(scopes);
+        this.includes = compile(includes);
+        this.excludes = compile(excludes);
+        this.markers = compile(markers);
+        this.prune = prune;
+    }
+
+    List<File> resolve(Collection<Artifact> artifacts) {
+        Map<String, Artifact> candidates = new LinkedHashMap<>();
+        for (Artifact artifact : artifacts) {
+            File file = artifact.getFile();
+            if (file == null || !file.isFile() || !"jar".equals(artifact.getType())) {
+                continue;
+            }
+            String key = key(artifact.getGroupId(), artifact.getArtifactId());
+            if (!scopes.contains(artifact.getScope())
+                    || (!includes.isEmpty() && !matches(includes, key)) || matches(excludes, key)) {
+                excluded++;
+                continue;
+            }
+            candidates.put(key, artifact);
+        }
+
+        List<File> files = new ArrayList<>();
+        if (!prune) {
+            for (Artifact artifact : candidates.values()) {
+                files.add(artifact.getFile());
+            }
+            return files;
+        }
+
+        Map<String, String> keysByArtifactId = new HashMap<>();
+        for (Artifact artifact : artifacts) {
+            keysByArtifactId.put(artifact.getArtifactId(), key(artifact.getGroupId(), artifact.getArtifactId()));
+        }
+        Map<String, Set<String>> resolved = resolvedDependencies(artifacts);
+        Map<String, List<String>> dependencies = new HashMap<>();
+        for (Map.Entry<String, Artifact> entry : candidates.entrySet()) {
+            Artifact artifact = entry.getValue();
+            List<String> declared = declaredDependencies(artifact, keysByArtifactId);
+            if (hasTrail(artifact)) {
+                List<String> keys = new ArrayList<>();
+                if (resolved.containsKey(entry.getKey())) {
+                    keys.addAll(resolved.get(entry.getKey()));
+                }
+                if (declared != null) {
+                    keys.addAll(declared);
+                }
+                dependencies.put(entry.getKey(), keys);
+            } else {
+                dependencies.put(entry.getKey(), declared);
+            }
+        }
+        Map<String, Boolean> relevant = new HashMap<>();
+        Set<String> inProgress = new HashSet<>();
+        for (Map.Entry<String, Artifact> entry : candidates.entrySet()) {
+            if (isRelevant(entry.getKey(), dependencies, relevant, inProgress)) {
+                files.add(entry.getValue().getFile());
+            } else {
+                pruned++;
+                log.debug("Pruned from scan: " + entry.getKey());
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Whether the artifact reaches a marker, or a jar whose dependencies are unknown, through its dependencies.
+     * Only final answers are kept: a jar reached again through a cycle counts as irrelevant for that path alone, so
+     * a negative answer is kept only once no artifact is left in progress.
+     */
+    private boolean isRelevant(String key, Map<String, List<String>> dependencies, Map<String, Boolean> relevant,
+                               Set<String> inProgress) {
+        Boolean known = relevant.get(key);
+        if (known != null) {
+            return known;
+        }
+        if (matches(markers, key)) {
+            relevant.put(key, true);
+            return true;
+        }
+        if (!dependencies.containsKey(key)) {
+            // not part of the scan set
+            relevant.put(key, false);
+            return false;
+        }
+        List<String> declared = dependencies.get(key);
+        if (declared == null) {
+            // no embedded pom, nothing proves it irrelevant
+            relevant.put(key, true);
+            return true;
+        }
+        if (!inProgress.add(key)) {
+            // already on the path being resolved
+            return false;
+        }
+        boolean result = false;
+        for (String dependency : declared) {
+            if (isRelevant(dependency, dependencies, relevant, inProgress)) {
+                result = true;
+                break;
+            }
+        }
+        inProgress.remove(key);
+        if (result || inProgress.isEmpty()) {
+            relevant.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Every artifact each resolved artifact leads to in the dependency graph. A trail runs from the project through
+     * the artifacts that brought the artifact in, so all of them reach it, whether or not they are scanned.
+     */
+    private static Map<String, Set<String>> resolvedDependencies(Collection<Artifact> artifacts) {
+        Map<String, Set<String>> dependencies = new HashMap<>();
+        for (Artifact artifact : artifacts) {
+            if (!hasTrail(artifact)) {
+                continue;
+            }
+            String key = key(artifact.getGroupId(), artifact.getArtifactId());
+            List<String> trail = artifact.getDependencyTrail();
+            // the first entry is the project, the last the artifact itself
+            for (String id : trail.subList(1, trail.size() - 1)) {
+                String[] parts = id.split(":");
+                if (parts.length < 2) {
+                    continue;
+                }
+                String dependent = key(parts[0], parts[1]);
+                Set<String> keys = dependencies.get(dependent);
+                if (keys == null) {
+                    keys = new HashSet<>();
+                    dependencies.put(dependent, keys);
+                }
+                keys.add(key);
+            }
+        }
+        return dependencies;
+    }
+
+    private static boolean hasTrail(Artifact artifact) {
+        List<String> trail = artifact.getDependencyTrail();
+        return trail != null && trail.size() > 1;
+    }
+
+    /**
+     * The dependencies the embedded pom lists, or null when there is none or, for an artifact missing from the
+     * resolved graph, when it inherits dependencies from a parent the jar does not carry.
+     */
+    private List<String> declaredDependencies(Artifact artifact, Map<String, String> keysByArtifactId) {
+        try (ZipFile zipFile = new ZipFile(artifact.getFile())) {
+            ZipEntry entry = zipFile.getEntry("META-INF/maven/" + artifact.getGroupId() + "/" + artifact.getArtifactId() + "/pom.xml");
+            if (entry == null) {
+                return null;
+            }
+            Model model;
+            try (InputStream in = zipFile.getInputStream(entry)) {
+                model = new MavenXpp3Reader().read(in, false);
+            }
+            if (model.getParent() != null && !hasTrail(artifact)) {
+                return null;
+            }
+            List<String> keys = new ArrayList<>();
+            for (Dependency dependency : model.getDependencies()) {
+                String groupId = dependency.getGroupId();
+                if (groupId == null || groupId.contains("${")) {
+                    String key = keysByArtifactId.get(dependency.getArtifactId());
+                    keys.add(key != null ? key : key(artifact.getGroupId(), dependency.getArtifactId()));
+                } else {
+                    keys.add(key(groupId, dependency.getArtifactId()));
+                }
+            }
+            return keys;
+        } catch (IOException | XmlPullParserException e) {
+            log.debug("Could not read the pom of " + artifact + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static String key(String groupId, String artifactId) {
+        return groupId + ":" + artifactId;
+    }
+
+    private static boolean matches(List<Pattern> patterns, String key) {
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(key).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Pattern> compile(Collection<String> globs) {
+        List<Pattern> patterns = new ArrayList<>();
+        for (String glob : globs) {
+            String trimmed = glob.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (!trimmed.contains(":")) {
+                trimmed = "*:" + trimmed;
+            }
+            StringBuilder regex = new StringBuilder();
+            String[] parts = trimmed.split("\\*", -1);
+            for (int i = 0; i < parts.length; i++) {
+                if (i > 0) {
+                    regex.append(".*");
+                }
+                if (!parts[i].isEmpty()) {
+                    regex.append(Pattern.quote(parts[i]));
+                }
+            }
+            patterns.add(Pattern.compile(regex.toString()));
+        }
+        return patterns;
+    }
+
+    int getExcluded() {
+        return excluded;
+    }
+
+    int getPruned() {
+        return pruned;
+    }
+}
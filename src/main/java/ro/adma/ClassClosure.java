@@ -0,0 +1,96 @@
+package ro.adma;
+
+import com.google.common.base.Predicate;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Classes statically referenced from a set of root classes, found by following the CONSTANT_Class entries of their
+ * class files through the scanned class path. Classes that are not on it, like the JDK's, end the walk.
+ */
+class ClassClosure implements Closeable {
+    private final List<File> classPath = new ArrayList<>();
+    private final Map<File, ZipFile> jars = new HashMap<>();
+
+    ClassClosure(Collection<URL> urls) {
+        for (URL url : urls) {
+            File file = ClassPathScanner.toFile(url);
+            if (file != null) {
+                classPath.add(file);
+            }
+        }
+        Collections.sort(classPath);
+    }
+
+    /**
+     * The roots and their transitive references accepted by the filter, breadth first from the sorted roots with
+     * each class's references in name order, so the list is stable between builds.
+     */
+    List<String> resolve(Collection<String> rootClasses, Predicate<String> filter) throws IOException {
+        ClassFileReader reader = new ClassFileReader();
+        Set<String> seen = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        for (String root : new TreeSet<>(rootClasses)) {
+            if (filter == null || filter.apply(root)) {
+                seen.add(root);
+                queue.add(root);
+            }
+        }
+        List<String> classes = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            String className = queue.poll();
+            try (InputStream in = open(className)) {
+                if (in == null) {
+                    continue;
+                }
+                reader.load(in);
+            }
+            classes.add(className);
+            for (String reference : new TreeSet<>(reader.classReferences())) {
+                if (!seen.contains(reference) && (filter == null || filter.apply(reference))) {
+                    seen.add(reference);
+                    queue.add(reference);
+                }
+            }
+        }
+        return classes;
+    }
+
+    private InputStream open(String className) throws IOException {
+        String path = className.replace('.', '/') + ".class";
+        for (File root : classPath) {
+            if (root.isDirectory()) {
+                File file = new File(root, path);
+                if (file.isFile()) {
+                    return new FileInputStream(file);
+                }
+            } else if (root.isFile()) {
+                ZipFile jar = jars.get(root);
+                if (jar == null) {
+                    jar = new ZipFile(root);
+                    jars.put(root, jar);
+                }
+                ZipEntry entry = jar.getEntry(path);
+                if (entry != null) {
+                    return jar.getInputStream(entry);
+                }
+            }
+        }
+        return null;
+    }
+
+    public void close() throws IOException {
+        for (ZipFile jar : jars.values()) {
+            jar.close();
+        }
+        jars.clear();
+    }
+}
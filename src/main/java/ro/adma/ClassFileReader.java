@@ -0,0 +1,356 @@
+package ro.adma;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Minimal class file parser for the scan: it indexes the constant pool, reads the class name, super class and
+ * interfaces, steps over fields and methods by their attribute lengths and decodes only the class level
+ * RuntimeVisibleAnnotations. Buffers are reused between classes, so one instance must not be shared by threads.
+ */
+class ClassFileReader {
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+
+    private byte[] buf = new byte[16 * 1024];
+    private int length;
+    private int[] offsets = new int[512];
+    private char[] chars = new char[256];
+    private int constantCount;
+    private int membersOffset;
+
+    ClassSummary read(InputStream in) throws IOException {
+        load(in);
+        return summary(true);
+    }
+
+    void load(InputStream in) throws IOException {
+        length = 0;
+        int read;
+        while ((read = in.read(buf, length, buf.length - length)) != -1) {
+            length += read;
+            if (length == buf.length) {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+        }
+        if (length < 10 || u4(0) != MAGIC) {
+            throw new IOException("Not a class file");
+        }
+        try {
+            membersOffset = readConstantPool();
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Truncated class file", e);
+        }
+    }
+
+    InputStream bytes() {
+        return new ByteArrayInputStream(buf, 0, length);
+    }
+
+    /**
+     * Whether any Utf8 constant of the loaded class equals one of the given (modified UTF-8) strings.
+     */
+    boolean references(byte[][] needles) {
+        for (int i = 1; i < constantCount; i++) {
+            int offset = offsets[i];
+            if (buf[offset] != 1) {
+                continue;
+            }
+            int len = u2(offset + 1);
+            for (byte[] needle : needles) {
+                if (needle.length == len && regionEquals(offset + 3, needle)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Names of the classes in the CONSTANT_Class entries of the loaded class, array types reduced to their element
+     * class and primitive arrays left out.
+     */
+    List<String> classReferences() {
+        List<String> references = new ArrayList<>();
+        for (int i = 1; i < constantCount; i++) {
+            if (buf[offsets[i]] != 7) {
+                continue;
+            }
+            String name = utf8(u2(offsets[i] + 1));
+            if (name.startsWith("[")) {
+                int element = name.lastIndexOf('[') + 1;
+                if (name.charAt(element) != 'L') {
+                    continue;
+                }
+                name = name.substring(element + 1, name.length() - 1);
+            }
+            references.add(name.replace('/', '.'));
+        }
+        return references;
+    }
+
+    private boolean regionEquals(int start, byte[] needle) {
+        for (int i = needle.length - 1; i >= 0; i--) {
+            if (buf[start + i] != needle[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    ClassSummary summary(boolean annotations) throws IOException {
+        try {
+            return parse(annotations);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Truncated class file", e);
+        }
+    }
+
+    private ClassSummary parse(boolean withAnnotations) {
+        int pos = membersOffset;
+        String name = className(u2(pos + 2));
+        int superIndex = u2(pos + 4);
+        String superName = superIndex == 0 ? null : className(superIndex);
+        String[] interfaces = new String[u2(pos + 6)];
+        pos += 8;
+        for (int i = 0; i < interfaces.length; i++, pos += 2) {
+            interfaces[i] = className(u2(pos));
+        }
+        Map<String, List<String>> annotations = new LinkedHashMap<>();
+        if (!withAnnotations) {
+            return new ClassSummary(name, superName, interfaces, annotations);
+        }
+        pos = skipMembers(pos);
+        pos = skipMembers(pos);
+        int attributeCount = u2(pos);
+        pos += 2;
+        for (int i = 0; i < attributeCount; i++) {
+            if (utf8Equals(u2(pos), RUNTIME_VISIBLE_ANNOTATIONS)) {
+                readAnnotations(pos + 6, annotations);
+            }
+            pos += 6 + u4(pos + 2);
+        }
+        return new ClassSummary(name, superName, interfaces, annotations);
+    }
+
+    private int readConstantPool() throws IOException {
+        int count = u2(8);
+        constantCount = count;
+        if (offsets.length < count) {
+            offsets = new int[Math.max(count, offsets.length * 2)];
+        }
+        int pos = 10;
+        for (int i = 1; i < count; i++) {
+            offsets[i] = pos;
+            int tag = buf[pos] & 0xff;
+            switch (tag) {
+                case 1: // Utf8
+                    pos += 3 + u2(pos + 1);
+                    break;
+                case 7: // Class
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    pos += 3;
+                    break;
+                case 15: // MethodHandle
+                    pos += 4;
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    pos += 5;
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    pos += 9;
+                    // the unusable second slot points at the same constant, never a Utf8 or Class tag
+                    offsets[i + 1] = offsets[i];
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag + " at " + pos);
+            }
+        }
+        return pos;
+    }
+
+    private int skipMembers(int pos) {
+        int count = u2(pos);
+        pos += 2;
+        for (int i = 0; i < count; i++) {
+            int attributeCount = u2(pos + 6);
+            pos += 8;
+            for (int j = 0; j < attributeCount; j++) {
+                pos += 6 + u4(pos + 2);
+            }
+        }
+        return pos;
+    }
+
+    private void readAnnotations(int pos, Map<String, List<String>> annotations) {
+        int count = u2(pos);
+        pos += 2;
+        for (int i = 0; i < count; i++) {
+            String typeName = descriptorToClassName(utf8(u2(pos)));
+            int pairs = u2(pos + 2);
+            pos += 4;
+            List<String> values = new ArrayList<>(1);
+            for (int j = 0; j < pairs; j++) {
+                boolean value = utf8Equals(u2(pos), "value");
+                pos = elementValue(pos + 2, value ? values : null);
+            }
+            annotations.put(typeName, values);
+        }
+    }
+
+    // keeps the string forms AnnotationScanner produces from javassist member values
+    private int elementValue(int pos, List<String> values) {
+        int tag = buf[pos++];
+        switch (tag) {
+            case 's':
+                if (values != null) {
+                    values.add(utf8(u2(pos)));
+                }
+                return pos + 2;
+            case 'Z':
+                if (values != null) {
+                    values.add(String.valueOf(u4(offsets[u2(pos)] + 1) != 0));
+                }
+                return pos + 2;
+            case 'c':
+                if (values != null) {
+                    values.add(descriptorToClassName(utf8(u2(pos))));
+                }
+                return pos + 2;
+            case 'e':
+                if (values != null) {
+                    values.add(utf8(u2(pos + 2)));
+                }
+                return pos + 4;
+            case '[':
+                int count = u2(pos);
+                pos += 2;
+                for (int i = 0; i < count; i++) {
+                    pos = elementValue(pos, values);
+                }
+                return pos;
+            case '@':
+                int pairs = u2(pos + 2);
+                pos += 4;
+                for (int i = 0; i < pairs; i++) {
+                    pos = elementValue(pos + 2, null);
+                }
+                return pos;
+            default:
+                // B C D F I J S: a constant pool index we do not need
+                return pos + 2;
+        }
+    }
+
+    private String className(int classIndex) {
+        return utf8(u2(offsets[classIndex] + 1)).replace('/', '.');
+    }
+
+    private String utf8(int index) {
+        int offset = offsets[index];
+        int len = u2(offset + 1);
+        if (chars.length < len) {
+            chars = new char[Math.max(len, chars.length * 2)];
+        }
+        int n = 0;
+        for (int i = offset + 3, end = i + len; i < end; ) {
+            int c = buf[i] & 0xff;
+            if (c < 0x80) {
+                chars[n++] = (char) c;
+                i++;
+            } else if ((c & 0xe0) == 0xc0) {
+                chars[n++] = (char) (((c & 0x1f) << 6) | (buf[i + 1] & 0x3f));
+                i += 2;
+            } else {
+                chars[n++] = (char) (((c & 0x0f) << 12) | ((buf[i + 1] & 0x3f) << 6) | (buf[i + 2] & 0x3f));
+                i += 3;
+            }
+        }
+        return new String(chars, 0, n);
+    }
+
+    private boolean utf8Equals(int index, String ascii) {
+        int offset = offsets[index];
+        if (buf[offset] != 1 || u2(offset + 1) != ascii.length()) {
+            return false;
+        }
+        for (int i = 0, start = offset + 3; i < ascii.length(); i++) {
+            if (buf[start + i] != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static String descriptorToClassName(String descriptor) {
+        int dims = 0;
+        while (descriptor.charAt(dims) == '[') {
+            dims++;
+        }
+        String name;
+        switch (descriptor.charAt(dims)) {
+            case 'L':
+                name = descriptor.substring(dims + 1, descriptor.indexOf(';', dims)).replace('/', '.');
+                break;
+            case 'Z':
+                name = "boolean";
+                break;
+            case 'B':
+                name = "byte";
+                break;
+            case 'C':
+                name = "char";
+                break;
+            case 'S':
+                name = "short";
+                break;
+            case 'I':
+                name = "int";
+                break;
+            case 'J':
+                name = "long";
+                break;
+            case 'F':
+                name = "float";
+                break;
+            case 'D':
+                name = "double";
+                break;
+            case 'V':
+                name = "void";
+                break;
+            default:
+                name = descriptor.substring(dims);
+        }
+        if (dims == 0) {
+            return name;
+        }
+        StringBuilder sb = new StringBuilder(name);
+        for (int i = 0; i < dims; i++) {
+            sb.append("[]");
+        }
+        return sb.toString();
+    }
+
+    private int u2(int pos) {
+        return ((buf[pos] & 0xff) << 8) | (buf[pos + 1] & 0xff);
+    }
+
+    private int u4(int pos) {
+        return ((buf[pos] & 0xff) << 24) | ((buf[pos + 1] & 0xff) << 16) | ((buf[pos + 2] & 0xff) << 8) | (buf[pos + 3] & 0xff);
+    }
+}
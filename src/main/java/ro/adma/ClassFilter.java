@@ -0,0 +1,350 @@
+package ro.adma;
+
+import com.google.common.base.Predicate;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Include and exclude rules over class names, compiled into one character trie that a name is walked through once.
+ * <p>
+ * The {@code "+rule, -rule"} rules of {@code includeExclude} and {@code classListFilter} are regular expressions over
+ * the dotted class file name ({@code com.example.Foo.class}), as the Reflections input filter matched them. Those made
+ * only of literal characters, escaped dots and dollars, and {@code .*} ({@code com\.example\..*}) mean the same as a
+ * glob over that name and go into the trie; any other one, such as {@code com.example.*} with its unescaped dots, is
+ * matched as a regular expression. The {@code excludeClasses} rules are globs over the class name itself: an exact
+ * name, a package or name prefix ({@code com.example.*}) or a glob whose {@code *} matches any run of characters.
+ * <p>
+ * Rules combine like the Reflections filter chain they replace: with a leading exclude a name is accepted unless an
+ * exclude matches it; with a leading include it needs a matching include, and no matching exclude after it. Class
+ * file paths are matched as they are, without building a class name, and a walk stops as soon as no rule can match.
+ */
+class ClassFilter implements Predicate<String> {
+    private static final int MAX_RULES = 64;
+    private static final String CLASS_SUFFIX = ".class";
+
+    private final Node root = new Node();
+    // appended to class names to make the matched input: the file name for regular expressions, nothing for globs
+    private final String suffix;
+    private boolean stars;
+    private boolean firstExclude;
+    private int ruleCount;
+    private long includes;
+    private long excludes;
+    // rules kept as regular expressions, by rule index
+    private final List<Pattern> patterns = new ArrayList<>();
+    private final List<Integer> patternRules = new ArrayList<>();
+    // excludeClasses names without a '*', looked up instead of walked
+    private final Set<String> excludedNames = new HashSet<>();
+
+    private ClassFilter(String suffix) {
+        this.suffix = suffix;
+    }
+
+    static ClassFilter parse(String rules) {
+        ClassFilter filter = new ClassFilter(CLASS_SUFFIX);
+        for (String rule : rules.split(",")) {
+            String trimmed = rule.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            char prefix = trimmed.charAt(0);
+            if (prefix != '+' && prefix != '-') {
+                throw new IllegalArgumentException("Rule " + trimmed + " does not start with + or -");
+            }
+            String expression = trimmed.substring(1).trim();
+            filter.add(prefix == '-', expression, toGlob(expression));
+        }
+        return filter;
+    }
+
+    /**
+     * A filter accepting every name but those matching one of the rules. Any match excludes, so the globs share one
+     * rule bit and there is no limit on their number.
+     */
+    static ClassFilter excluding(Collection<String> rules) {
+        ClassFilter filter = new ClassFilter("");
+        for (String rule : rules) {
+            String trimmed = rule.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (filter.ruleCount == 0) {
+                filter.ruleCount = 1;
+                filter.firstExclude = true;
+                filter.excludes = 1L;
+            }
+            if (trimmed.indexOf('*') == -1) {
+                filter.excludedNames.add(trimmed);
+            } else {
+                filter.insert(trimmed, 1L);
+            }
+        }
+        return filter;
+    }
+
+    private void add(boolean exclude, String rule, String glob) {
+        if (ruleCount == MAX_RULES) {
+            throw new IllegalArgumentException("More than " + MAX_RULES + " include and exclude rules");
+        }
+        int index = ruleCount++;
+        if (index == 0) {
+            firstExclude = exclude;
+        }
+        long bit = 1L << index;
+        if (exclude) {
+            excludes |= bit;
+        } else {
+            includes |= bit;
+        }
+        if (glob == null) {
+            patterns.add(Pattern.compile(rule));
+            patternRules.add(index);
+            return;
+        }
+        insert(glob, bit);
+    }
+
+    private void insert(String glob, long bit) {
+        Node node = root;
+        int length = glob.length();
+        while (length > 0 && glob.charAt(length - 1) == '*') {
+            length--;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = glob.charAt(i);
+            if (c == '*') {
+                if (node.star == null) {
+                    node.star = new Node();
+                    node.star.loop = true;
+                }
+                node = node.star;
+                stars = true;
+                while (i + 1 < length && glob.charAt(i + 1) == '*') {
+                    i++;
+                }
+            } else {
+                node = node.add(c);
+            }
+        }
+        if (length < glob.length()) {
+            node.prefixRules |= bit;
+        } else {
+            node.exactRules |= bit;
+        }
+    }
+
+    /**
+     * The regular expression as a glob over the same input, or null when it is not one in disguise: only literal
+     * characters, {@code \.}, {@code \$} and {@code .*}, which the glob's {@code *} matches exactly like.
+     */
+    static String toGlob(String rule) {
+        StringBuilder glob = new StringBuilder();
+        for (int i = 0; i < rule.length(); i++) {
+            char c = rule.charAt(i);
+            if (c == '\\' && i + 1 < rule.length() && (rule.charAt(i + 1) == '.' || rule.charAt(i + 1) == '$')) {
+                glob.append(rule.charAt(++i));
+            } else if (c == '.' && i + 1 < rule.length() && rule.charAt(i + 1) == '*') {
+                glob.append('*');
+                i++;
+            } else if (containsAny(String.valueOf(c), "\\.$()[]{}^|+?*")) {
+                return null;
+            } else {
+                glob.append(c);
+            }
+        }
+        return glob.toString();
+    }
+
+    private static boolean containsAny(String value, String chars) {
+        for (int i = 0; i < value.length(); i++) {
+            if (chars.indexOf(value.charAt(i)) != -1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether a class file path relative to its root or jar, such as {@code com/example/Foo.class}, is accepted.
+     * Other files never are.
+     */
+    boolean acceptsEntry(String path) {
+        if (!path.endsWith(CLASS_SUFFIX)) {
+            return false;
+        }
+        if (!excludedNames.isEmpty()
+                && excludedNames.contains(path.substring(0, path.length() - CLASS_SUFFIX.length()).replace('/', '.'))) {
+            return false;
+        }
+        // the path already ends with the matched suffix, or has to lose its own
+        int length = path.length() - CLASS_SUFFIX.length() + suffix.length();
+        return accepts(walk(path, length, "", true, true, null) | matchPatterns(path.substring(0, length).replace('/', '.')));
+    }
+
+    /**
+     * Whether a scanned class is accepted, the same way its class file path would be.
+     */
+    boolean acceptsClass(String className) {
+        if (excludedNames.contains(className)) {
+            return false;
+        }
+        return accepts(walk(className, className.length(), suffix, false, true, null) | matchPatterns(className + suffix));
+    }
+
+    /**
+     * Whether a class name is accepted, as {@link #acceptsClass} tells; the class list filter matches names this way.
+     */
+    public boolean apply(String className) {
+        return acceptsClass(className);
+    }
+
+    /**
+     * Whether no class in the package, given as a directory path such as {@code com/example}, or in its
+     * subpackages can be accepted, so a directory walk can skip it.
+     */
+    boolean rejectsPackage(String packagePath) {
+        if (ruleCount == 0) {
+            return false;
+        }
+        boolean[] open = new boolean[1];
+        long matched = walk(packagePath + "/", packagePath.length() + 1, "", true, false, open);
+        long excluded = matched & excludes;
+        if (excluded != 0) {
+            // an exclude only loses to an include coming after it
+            int last = 63 - Long.numberOfLeadingZeros(excluded);
+            if (firstExclude || last == 63 || (includes & (-1L << (last + 1))) == 0) {
+                return true;
+            }
+        }
+        // with a leading include nothing below is accepted when no literal rule can still match
+        return !firstExclude && !open[0] && (matched & includes) == 0 && patterns.isEmpty();
+    }
+
+    private boolean accepts(long matched) {
+        if (ruleCount == 0) {
+            return true;
+        }
+        if (firstExclude) {
+            return (matched & excludes) == 0;
+        }
+        long included = matched & includes;
+        if (included == 0) {
+            return false;
+        }
+        int first = Long.numberOfTrailingZeros(included);
+        return first == 63 || (matched & excludes & (-1L << (first + 1))) == 0;
+    }
+
+    private long matchPatterns(String input) {
+        long matched = 0;
+        for (int i = 0; i < patterns.size(); i++) {
+            if (patterns.get(i).matcher(input).matches()) {
+                matched |= 1L << patternRules.get(i);
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Walks the first {@code length} characters of the name, reading '/' as '.' in a path, then the suffix, and
+     * returns the rules matched: every prefix rule passed and, when the input ends there, the exact rules of the end
+     * state. {@code open[0]} tells whether a longer name could still match more rules.
+     */
+    private long walk(String name, int length, String suffix, boolean path, boolean end, boolean[] open) {
+        int total = length + suffix.length();
+        long rules = root.prefixRules;
+        if (!stars) {
+            Node node = root;
+            for (int i = 0; i < total; i++) {
+                char c = i < length ? name.charAt(i) : suffix.charAt(i - length);
+                node = node.child(path && c == '/' ? '.' : c);
+                if (node == null) {
+                    return rules;
+                }
+                rules |= node.prefixRules;
+            }
+            if (open != null) {
+                open[0] = node.keys.length > 0;
+            }
+            return end ? rules | node.exactRules : rules;
+        }
+        List<Node> active = new ArrayList<>();
+        List<Node> next = new ArrayList<>();
+        rules |= enter(active, root);
+        for (int i = 0; i < total && !active.isEmpty(); i++) {
+            char c = i < length ? name.charAt(i) : suffix.charAt(i - length);
+            if (path && c == '/') {
+                c = '.';
+            }
+            next.clear();
+            for (Node node : active) {
+                if (node.loop) {
+                    rules |= enter(next, node);
+                }
+                Node child = node.child(c);
+                if (child != null) {
+                    rules |= enter(next, child);
+                }
+            }
+            List<Node> swap = active;
+            active = next;
+            next = swap;
+        }
+        if (end) {
+            for (Node node : active) {
+                rules |= node.exactRules;
+            }
+        }
+        if (open != null) {
+            open[0] = !active.isEmpty();
+        }
+        return rules;
+    }
+
+    // adds the node, and the star it can skip to, and returns their prefix rules
+    private static long enter(List<Node> states, Node node) {
+        long rules = 0;
+        for (; node != null; node = node.star) {
+            if (!states.contains(node)) {
+                states.add(node);
+                rules |= node.prefixRules;
+            }
+            if (node.loop) {
+                break;
+            }
+        }
+        return rules;
+    }
+
+    private static class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        // reached by skipping a '*'; a star node loops on every character
+        private Node star;
+        private boolean loop;
+        private long prefixRules;
+        private long exactRules;
+
+        Node child(char c) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node add(char c) {
+            Node child = child(c);
+            if (child == null) {
+                child = new Node();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                keys[keys.length - 1] = c;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package ro.adma;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * On-disk index of scanned class summaries, keyed by class file or jar path and validated by size and mtime.
+ */
+class ClassIndex {
+    private static final int MAGIC = 0x57454249;
+    private static final int VERSION = 1;
+
+    static class Entry {
+        private final long length;
+        private final long lastModified;
+        private final List<ClassSummary> classes;
+
+        Entry(long length, long lastModified, List<ClassSummary> classes) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.classes = classes;
+        }
+
+        List<ClassSummary> getClasses() {
+            return classes;
+        }
+    }
+
+    private final String key;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private boolean modified;
+
+    ClassIndex(String key) {
+        this.key = key;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    /**
+     * The entry of the file if it was indexed with this length and modification time, which the caller already
+     * read from the file system.
+     */
+    Entry get(File file, long length, long lastModified) {
+        Entry entry = entries.get(file.getAbsolutePath());
+        if (entry != null && entry.length == length && entry.lastModified == lastModified) {
+            return entry;
+        }
+        return null;
+    }
+
+    /**
+     * Indexes the summaries under the length and modification time the file had when it was read, so a file changed
+     * since is read again on the next build.
+     */
+    void put(File file, long length, long lastModified, List<ClassSummary> classes) {
+        entries.put(file.getAbsolutePath(), new Entry(length, lastModified, classes));
+        modified = true;
+    }
+
+    int retainAll(Set<String> paths) {
+        int removed = 0;
+        for (Iterator<String> iterator = entries.keySet().iterator(); iterator.hasNext(); ) {
+            if (!paths.contains(iterator.next())) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            modified = true;
+        }
+        return removed;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    boolean isModified() {
+        return modified;
+    }
+
+    static ClassIndex load(File file, String key) throws IOException {
+        ClassIndex index = new ClassIndex(key);
+        if (!file.isFile()) {
+            return index;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !key.equals(in.readUTF())) {
+                return index;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long length = in.readLong();
+                long lastModified = in.readLong();
+                int classCount = in.readInt();
+                List<ClassSummary> classes = new ArrayList<>(classCount);
+                for (int j = 0; j < classCount; j++) {
+                    classes.add(ClassSummary.read(in));
+                }
+                index.entries.put(path, new Entry(length, lastModified, classes));
+            }
+        } catch (EOFException e) {
+            index.entries.clear();
+        }
+        return index;
+    }
+
+    void save(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create directory " + parent);
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(key);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().length);
+                out.writeLong(entry.getValue().lastModified);
+                out.writeInt(entry.getValue().classes.size());
+                for (ClassSummary summary : entry.getValue().classes) {
+                    summary.write(out);
+                }
+            }
+        }
+        if (file.exists() && !file.delete() || !tmp.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+        modified = false;
+    }
+}
@@ -0,0 +1,490 @@
+package ro.adma;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Scans class directories and jars into a {@link ScanResult}, re-parsing only the files that changed since the
+ * {@link ClassIndex} was written. Classes are parsed with javassist unless the {@link ClassFileReader} is enabled.
+ * <p>
+ * The inputs are split into units (one per jar, one per chunk of class files) which can be parsed on a
+ * work-stealing pool; every unit keeps its own results and they are merged in input order afterwards, so the
+ * result does not depend on the parallelism.
+ */
+class ClassPathScanner {
+    private static final int CHUNK_SIZE = 256;
+
+    private final ClassFilter filter;
+    private final ClassIndex index;
+    private JarCache jarCache;
+    private SharedSummaryCache sharedCache;
+    private WarmSummaryCache warmCache;
+    private boolean classFileReader;
+    private byte[][] needles;
+    private int parallelism = 1;
+    private boolean embeddedIndexes;
+    private final Map<File, BasicFileAttributes> listed = new HashMap<>();
+    private boolean streaming;
+    private Collection<String> annotationTypes;
+    private int parsed;
+    private int reused;
+    private int removed;
+    private int rejected;
+    private int indexed;
+    private long workerCpuNanos;
+    private final List<ScanMetrics.JarStats> jarStats = new ArrayList<>();
+
+    ClassPathScanner(ClassFilter filter, ClassIndex index) {
+        this.filter = filter;
+        this.index = index;
+    }
+
+    void setJarCache(JarCache jarCache) {
+        this.jarCache = jarCache;
+    }
+
+    void setSharedCache(SharedSummaryCache sharedCache) {
+        this.sharedCache = sharedCache;
+    }
+
+    void setWarmCache(WarmSummaryCache warmCache) {
+        this.warmCache = warmCache;
+    }
+
+    void useClassFileReader() {
+        this.classFileReader = true;
+    }
+
+    void useEmbeddedIndexes() {
+        this.embeddedIndexes = true;
+    }
+
+    /**
+     * Merges each unit's summaries as soon as it is read and drops them, instead of holding every unit until the
+     * end, and keeps only the values of the given annotation types. Jars get no entries in the {@link ClassIndex},
+     * which would keep their summaries alive too.
+     */
+    void useStreaming(Collection<String> annotationTypes) {
+        this.streaming = true;
+        this.annotationTypes = annotationTypes;
+    }
+
+    void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Only classes whose constant pool mentions one of the given annotation types get their annotations decoded;
+     * every other class is reduced to its name and supertypes, which the subtype resolution still needs.
+     */
+    void setPrefilter(Collection<String> annotationTypes) {
+        needles = new byte[annotationTypes.size()][];
+        int i = 0;
+        for (String annotationType : annotationTypes) {
+            needles[i++] = ("L" + annotationType.replace('.', '/') + ";").getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    ScanResult scan(Collection<URL> urls) throws IOException {
+        listed.clear();
+        List<Unit> units = plan(urls);
+        ScanResult result = new ScanResult(streaming ? annotationTypes : null);
+        Set<String> seen = new HashSet<>();
+        // streaming reads a few units per worker at a time, otherwise all of them before merging
+        int window = streaming ? Math.max(1, parallelism) * 4 : Math.max(1, units.size());
+        ForkJoinPool pool = parallelism > 1 && units.size() > 1 ? new ForkJoinPool(parallelism) : null;
+        try {
+            for (int start = 0; start < units.size(); start += window) {
+                int end = Math.min(start + window, units.size());
+                if (pool != null && end - start > 1) {
+                    pool.invoke(new UnitsTask(units, start, end));
+                } else {
+                    for (Unit unit : units.subList(start, end)) {
+                        unit.run();
+                    }
+                }
+                for (Unit unit : units.subList(start, end)) {
+                    merge(unit, result, seen);
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+        removed = index.retainAll(seen);
+        return result;
+    }
+
+    private void merge(Unit unit, ScanResult result, Set<String> seen) throws IOException {
+        if (unit.failure != null) {
+            throw unit.failure;
+        }
+        parsed += unit.parsed;
+        reused += unit.reused;
+        rejected += unit.rejected;
+        indexed += unit.indexed;
+        workerCpuNanos += unit.cpuNanos;
+        jarStats.addAll(unit.jarStats);
+        boolean keepInIndex = !(streaming && unit.jar);
+        for (int i = 0; i < unit.files.size(); i++) {
+            File file = unit.files.get(i);
+            if (keepInIndex) {
+                seen.add(file.getAbsolutePath());
+                if (unit.updated[i]) {
+                    index.put(file, unit.lengths[i], unit.lastModified[i], unit.classes.get(i));
+                }
+            }
+            for (ClassSummary summary : unit.classes.get(i)) {
+                result.add(summary);
+            }
+        }
+        if (streaming) {
+            unit.classes.clear();
+        }
+    }
+
+    private List<Unit> plan(Collection<URL> urls) throws IOException {
+        List<File> roots = new ArrayList<>();
+        for (URL url : urls) {
+            File file = toFile(url);
+            if (file != null && file.exists()) {
+                roots.add(file);
+            }
+        }
+        Collections.sort(roots);
+        List<Unit> units = new ArrayList<>();
+        for (File root : roots) {
+            if (root.isDirectory()) {
+                List<File> files = new ArrayList<>();
+                listClassFiles(root, files);
+                for (int i = 0; i < files.size(); i += CHUNK_SIZE) {
+                    units.add(new Unit(false, files.subList(i, Math.min(i + CHUNK_SIZE, files.size()))));
+                }
+            } else {
+                units.add(new Unit(true, Collections.singletonList(root)));
+            }
+        }
+        return units;
+    }
+
+    // one stat per file: the attributes of the walk also serve the index lookups
+    private void listClassFiles(final File root, final List<File> result) throws IOException {
+        final Path rootPath = root.toPath();
+        Files.walkFileTree(rootPath, new SimpleFileVisitor<Path>() {
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+                // an excluded package is not even listed
+                if (filter != null && !dir.equals(rootPath)
+                        && filter.rejectsPackage(rootPath.relativize(dir).toString().replace(File.separatorChar, '/'))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            public FileVisitResult visitFile(Path path, BasicFileAttributes attributes) {
+                String relativePath = rootPath.relativize(path).toString().replace(File.separatorChar, '/');
+                if (attributes.isRegularFile() && accepts(relativePath)) {
+                    File file = path.toFile();
+                    result.add(file);
+                    listed.put(file, attributes);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            public FileVisitResult visitFileFailed(Path path, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(result);
+    }
+
+    private boolean accepts(String relativePath) {
+        return filter != null ? filter.acceptsEntry(relativePath) : relativePath.endsWith(".class");
+    }
+
+    private class UnitsTask extends RecursiveAction {
+        private final List<Unit> units;
+        private final int from;
+        private final int to;
+
+        UnitsTask(List<Unit> units, int from, int to) {
+            this.units = units;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected void compute() {
+            if (to - from == 1) {
+                units.get(from).run();
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new UnitsTask(units, from, middle), new UnitsTask(units, middle, to));
+            }
+        }
+    }
+
+    /**
+     * One jar or a run of class files from one directory, together with everything its worker produced.
+     */
+    private class Unit {
+        private final boolean jar;
+        private final List<File> files;
+        private final List<List<ClassSummary>> classes;
+        private final boolean[] updated;
+        // the size and mtime each file had when it was listed or read, which are what its summaries are indexed under
+        private final long[] lengths;
+        private final long[] lastModified;
+        private ClassFileReader reader;
+        private int parsed;
+        private int reused;
+        private int rejected;
+        private int indexed;
+        private IOException failure;
+        private final List<ScanMetrics.JarStats> jarStats = new ArrayList<>();
+        private long cpuNanos;
+        // how the current jar was read, for its stats
+        private String source;
+        private long bytesRead;
+
+        Unit(boolean jar, List<File> files) {
+            this.jar = jar;
+            this.files = files;
+            this.classes = new ArrayList<>(files.size());
+            this.updated = new boolean[files.size()];
+            this.lengths = new long[files.size()];
+            this.lastModified = new long[files.size()];
+        }
+
+        void run() {
+            try {
+                for (int i = 0; i < files.size(); i++) {
+                    File file = files.get(i);
+                    BasicFileAttributes attributes = listed.get(file);
+                    if (attributes != null) {
+                        lengths[i] = attributes.size();
+                        lastModified[i] = attributes.lastModifiedTime().toMillis();
+                    } else {
+                        lengths[i] = file.length();
+                        lastModified[i] = file.lastModified();
+                    }
+                    ClassIndex.Entry entry = streaming && jar ? null : index.get(file, lengths[i], lastModified[i]);
+                    long wall = System.nanoTime();
+                    long cpu = ScanMetrics.cpuTime();
+                    source = "index";
+                    bytesRead = 0;
+                    if (entry != null) {
+                        classes.add(entry.getClasses());
+                        reused += entry.getClasses().size();
+                    } else {
+                        classes.add(jar ? readJar(file) : readClassFile(file));
+                        updated[i] = true;
+                    }
+                    cpu = ScanMetrics.cpuTime() - cpu;
+                    cpuNanos += cpu;
+                    if (jar) {
+                        jarStats.add(new ScanMetrics.JarStats(file.getPath(), source, classes.get(i).size(), bytesRead,
+                                System.nanoTime() - wall, cpu));
+                    }
+                }
+            } catch (IOException e) {
+                failure = e;
+            } catch (RuntimeException e) {
+                failure = new IOException(files.get(classes.size()) + ": " + e.getMessage(), e);
+            }
+        }
+
+        private List<ClassSummary> readClassFile(File file) throws IOException {
+            try (InputStream in = new FileInputStream(file)) {
+                parsed++;
+                return Collections.singletonList(parse(in, true));
+            }
+        }
+
+        private List<ClassSummary> readJar(File file) throws IOException {
+            if (embeddedIndexes) {
+                List<ClassSummary> all;
+                try (ZipFile zipFile = new ZipFile(file)) {
+                    all = EmbeddedIndex.read(zipFile);
+                }
+                if (all != null) {
+                    indexed += all.size();
+                    source = "embedded";
+                    return accepted(all);
+                }
+            }
+            if (sharedCache == null) {
+                return readFiltered(file);
+            }
+            final File jarFile = file;
+            final boolean[] read = new boolean[1];
+            // shared with the modules reading the jar with the same filter and prefilter
+            List<ClassSummary> classes = sharedCache.get(file, index.getKey(), new Callable<List<ClassSummary>>() {
+                public List<ClassSummary> call() throws IOException {
+                    read[0] = true;
+                    return readFiltered(jarFile);
+                }
+            });
+            if (!read[0]) {
+                reused += classes.size();
+                source = "shared";
+            }
+            return classes;
+        }
+
+        /**
+         * The jar's accepted classes, from the warm cache when this JVM read the jar with the same filter key before.
+         */
+        private List<ClassSummary> readFiltered(File file) throws IOException {
+            if (warmCache == null) {
+                return readStored(file);
+            }
+            List<ClassSummary> classes = warmCache.get(file, index.getKey());
+            if (classes != null) {
+                reused += classes.size();
+                source = "warm";
+                return classes;
+            }
+            classes = readStored(file);
+            warmCache.put(file, index.getKey(), classes);
+            return classes;
+        }
+
+        /**
+         * Reads the jar's accepted classes. Entries are filtered by name before they are inflated, and prefiltered,
+         * unless the jar cache, which holds whole jars, is in use.
+         */
+        private List<ClassSummary> readStored(File file) throws IOException {
+            source = "parsed";
+            if (jarCache == null) {
+                List<ClassSummary> classes = readEntries(file, true);
+                parsed += classes.size();
+                return classes;
+            }
+            String sha256 = JarCache.sha256(file);
+            bytesRead += file.length();
+            List<ClassSummary> all = jarCache.get(sha256);
+            if (all == null) {
+                all = readEntries(file, false);
+                jarCache.put(sha256, all);
+                parsed += all.size();
+            } else {
+                reused += all.size();
+                source = "jarCache";
+            }
+            return accepted(all);
+        }
+
+        private List<ClassSummary> accepted(List<ClassSummary> all) {
+            List<ClassSummary> classes = new ArrayList<>();
+            for (ClassSummary summary : all) {
+                if (filter == null || filter.acceptsClass(summary.getName())) {
+                    classes.add(summary);
+                }
+            }
+            return classes;
+        }
+
+        // ZipFile reads the central directory once; only the selected entries are ever inflated
+        private List<ClassSummary> readEntries(File file, boolean filtered) throws IOException {
+            List<ClassSummary> classes = new ArrayList<>();
+            try (ZipFile zipFile = new ZipFile(file)) {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry zipEntry = entries.nextElement();
+                    String name = zipEntry.getName();
+                    if (!zipEntry.isDirectory() && (filtered ? accepts(name) : name.endsWith(".class"))) {
+                        try (InputStream in = zipFile.getInputStream(zipEntry)) {
+                            classes.add(parse(in, filtered));
+                        }
+                        bytesRead += Math.max(0, zipEntry.getCompressedSize());
+                    }
+                }
+            }
+            return classes;
+        }
+
+        private ClassSummary parse(InputStream in, boolean prefiltered) throws IOException {
+            if (classFileReader || (prefiltered && needles != null)) {
+                if (reader == null) {
+                    reader = new ClassFileReader();
+                }
+                reader.load(in);
+                if (prefiltered && needles != null && !reader.references(needles)) {
+                    rejected++;
+                    return reader.summary(false);
+                }
+                if (classFileReader) {
+                    return reader.summary(true);
+                }
+                in = reader.bytes();
+            }
+            return ClassSummary.parse(new FilterInputStream(in) {
+                public void close() {
+                }
+            });
+        }
+    }
+
+    static File toFile(URL url) {
+        String spec = url.toExternalForm();
+        if (spec.startsWith("jar:")) {
+            int separator = spec.indexOf("!/");
+            spec = spec.substring("jar:".length(), separator != -1 ? separator : spec.length());
+        }
+        if (!spec.startsWith("file:")) {
+            return null;
+        }
+        try {
+            return new File(new URL(spec).toURI());
+        } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+            return new File(spec.substring("file:".length()));
+        }
+    }
+
+    /**
+     * How each jar was read, in class path order.
+     */
+    List<ScanMetrics.JarStats> getJarStats() {
+        return jarStats;
+    }
+
+    /**
+     * CPU time of the threads that read the units, the calling thread's included when it read them itself.
+     */
+    long getWorkerCpuNanos() {
+        return workerCpuNanos;
+    }
+
+    int getParsed() {
+        return parsed;
+    }
+
+    int getReused() {
+        return reused;
+    }
+
+    int getRemoved() {
+        return removed;
+    }
+
+    int getRejected() {
+        return rejected;
+    }
+
+    int getIndexed() {
+        return indexed;
+    }
+}
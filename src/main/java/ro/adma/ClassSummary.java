@@ -0,0 +1,112 @@
+package ro.adma;
+
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.AttributeInfo;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.annotation.Annotation;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * What the mapping goal needs to know about one class: its supertypes and the values of its class annotations.
+ */
+class ClassSummary {
+    private static final String[] NO_INTERFACES = new String[0];
+
+    private final String name;
+    private final String superName;
+    private final String[] interfaces;
+    private final Map<String, List<String>> annotations;
+
+    ClassSummary(String name, String superName, String[] interfaces, Map<String, List<String>> annotations) {
+        this.name = name;
+        this.superName = superName;
+        this.interfaces = interfaces != null ? interfaces : NO_INTERFACES;
+        this.annotations = annotations;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getSuperName() {
+        return superName;
+    }
+
+    String[] getInterfaces() {
+        return interfaces;
+    }
+
+    Map<String, List<String>> getAnnotations() {
+        return annotations;
+    }
+
+    static ClassSummary parse(InputStream in) throws IOException {
+        ClassFile classFile = new ClassFile(new DataInputStream(new BufferedInputStream(in)));
+        Map<String, List<String>> annotations = new LinkedHashMap<>();
+        AttributeInfo attribute = classFile.getAttribute(AnnotationsAttribute.visibleTag);
+        if (attribute instanceof AnnotationsAttribute) {
+            for (Annotation annotation : ((AnnotationsAttribute) attribute).getAnnotations()) {
+                List<String> values = new ArrayList<>();
+                AnnotationScanner.memberValues(annotation.getMemberValue("value"), values);
+                annotations.put(annotation.getTypeName(), values);
+            }
+        }
+        return new ClassSummary(classFile.getName(), classFile.getSuperclass(), classFile.getInterfaces(), annotations);
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeUTF(name);
+        out.writeUTF(superName != null ? superName : "");
+        out.writeShort(interfaces.length);
+        for (String anInterface : interfaces) {
+            out.writeUTF(anInterface);
+        }
+        out.writeShort(annotations.size());
+        for (Map.Entry<String, List<String>> entry : annotations.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeShort(entry.getValue().size());
+            for (String value : entry.getValue()) {
+                out.writeUTF(value);
+            }
+        }
+    }
+
+    static void writeAll(DataOutput out, List<ClassSummary> classes) throws IOException {
+        out.writeInt(classes.size());
+        for (ClassSummary summary : classes) {
+            summary.write(out);
+        }
+    }
+
+    static List<ClassSummary> readAll(DataInput in) throws IOException {
+        int count = in.readInt();
+        List<ClassSummary> classes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            classes.add(read(in));
+        }
+        return classes;
+    }
+
+    static ClassSummary read(DataInput in) throws IOException {
+        String name = in.readUTF();
+        String superName = in.readUTF();
+        String[] interfaces = new String[in.readUnsignedShort()];
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaces[i] = in.readUTF();
+        }
+        int annotationCount = in.readUnsignedShort();
+        Map<String, List<String>> annotations = new LinkedHashMap<>();
+        for (int i = 0; i < annotationCount; i++) {
+            String typeName = in.readUTF();
+            int valueCount = in.readUnsignedShort();
+            List<String> values = new ArrayList<>(valueCount);
+            for (int j = 0; j < valueCount; j++) {
+                values.add(in.readUTF());
+            }
+            annotations.put(typeName, values);
+        }
+        return new ClassSummary(name, superName.isEmpty() ? null : superName, interfaces, annotations);
+    }
+}
@@ -0,0 +1,386 @@
+package ro.adma;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Rewrites the generated block of a descriptor without loading the file into a String.
+ * <p>
+ * {@link #open} finds the first occurrence of every marker and the file's line separator in one pass over the
+ * file's bytes. {@link #write} then copies the untouched prefix and suffix bytes verbatim with channel transfers,
+ * streams the generated text between them into a temp file and moves that over the descriptor atomically.
+ */
+class DescriptorWriter {
+    private final File file;
+    private final long length;
+    private final Map<String, Long> positions;
+    private final String lineSeparator;
+
+    private DescriptorWriter(File file, long length, Map<String, Long> positions, String lineSeparator) {
+        this.file = file;
+        this.length = length;
+        this.positions = positions;
+        this.lineSeparator = lineSeparator;
+    }
+
+    static DescriptorWriter open(File file, String... markers) throws IOException {
+        if (!file.isFile()) {
+            throw new IOException(file + " was not found");
+        }
+        byte[][] patterns = new byte[markers.length][];
+        long[] found = new long[markers.length];
+        for (int i = 0; i < markers.length; i++) {
+            patterns[i] = markers[i].getBytes(StandardCharsets.UTF_8);
+            found[i] = -1;
+        }
+        String lineSeparator = null;
+        long length;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            length = channel.size();
+            ByteBuffer buffer = readBytes(channel, 0, length);
+            int remaining = markers.length;
+            for (int pos = 0; pos < length && (remaining > 0 || lineSeparator == null); pos++) {
+                byte b = buffer.get(pos);
+                if (b == '\n' && lineSeparator == null) {
+                    lineSeparator = pos > 0 && buffer.get(pos - 1) == '\r' ? "\r\n" : "\n";
+                }
+                for (int i = 0; i < patterns.length; i++) {
+                    if (found[i] == -1 && b == patterns[i][0] && matches(buffer, pos, length, patterns[i])) {
+                        found[i] = pos;
+                        remaining--;
+                    }
+                }
+            }
+        }
+        Map<String, Long> positions = new LinkedHashMap<>();
+        for (int i = 0; i < markers.length; i++) {
+            positions.put(markers[i], found[i]);
+        }
+        return new DescriptorWriter(file, length, positions, lineSeparator != null ? lineSeparator : System.getProperty("line.separator"));
+    }
+
+    private static boolean matches(ByteBuffer buffer, int pos, long length, byte[] pattern) {
+        if (pos + pattern.length > length) {
+            return false;
+        }
+        for (int i = 1; i < pattern.length; i++) {
+            if (buffer.get(pos + i) != pattern[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Byte offset of the first occurrence of an opened marker, or -1.
+     */
+    long indexOf(String marker) {
+        return positions.get(marker);
+    }
+
+    boolean contains(String marker) {
+        return indexOf(marker) != -1;
+    }
+
+    String getLineSeparator() {
+        return lineSeparator;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Adds the bytes between the end of {@code from} and the start of {@code to} to the digest, or nothing when
+     * either marker was not found.
+     */
+    void digest(String from, String to, MessageDigest digest) throws IOException {
+        long start = indexOf(from);
+        long end = indexOf(to);
+        if (start == -1 || end == -1 || end < start + from.length()) {
+            return;
+        }
+        start += from.length();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            digest.update(readBytes(channel, start, end - start));
+        }
+    }
+
+    /**
+     * Offset just after the first {@code '>'} at or after {@code start}, or -1.
+     */
+    long tagEnd(long start) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1024);
+            long pos = start;
+            while (pos < length) {
+                buffer.clear();
+                int read = channel.read(buffer, pos);
+                if (read == -1) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == '>') {
+                        return pos + i + 1;
+                    }
+                }
+                pos += read;
+            }
+        }
+        return -1;
+    }
+
+    String read(long start, long end) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return StandardCharsets.UTF_8.decode(readBytes(channel, start, end - start)).toString();
+        }
+    }
+
+    /**
+     * Replaces the bytes between {@code prefixEnd} and {@code suffixStart} with {@code before}, the generated text
+     * and {@code after}. The file is left untouched, and false returned, when they already hold that content.
+     */
+    boolean write(long prefixEnd, String before, CharSequence generated, String after, long suffixStart) throws IOException {
+        return write(Collections.singletonList(new Edit(prefixEnd, suffixStart, before, generated, after)));
+    }
+
+    /**
+     * Applies non-overlapping edits in one rewrite, or none when every edited range already holds its text.
+     */
+    boolean write(List<Edit> edits) throws IOException {
+        List<Edit> sorted = new ArrayList<>(edits);
+        Collections.sort(sorted);
+        boolean changed = false;
+        for (Edit edit : sorted) {
+            if (!contentEquals(edit.start, edit.end, edit.texts)) {
+                changed = true;
+                break;
+            }
+        }
+        if (!changed) {
+            return false;
+        }
+        File dir = file.getAbsoluteFile().getParentFile();
+        File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            try (FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                 FileChannel target = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long position = 0;
+                for (Edit edit : sorted) {
+                    if (edit.start < position) {
+                        throw new IOException(file + ": overlapping edits at " + edit.start);
+                    }
+                    transfer(source, position, edit.start - position, target);
+                    for (CharSequence text : edit.texts) {
+                        writeText(target, text);
+                    }
+                    position = edit.end;
+                }
+                transfer(source, position, length - position, target);
+                target.force(false);
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+        return true;
+    }
+
+    private boolean contentEquals(long start, long end, CharSequence... texts) throws IOException {
+        if (end < start) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final ByteBuffer existing = readBytes(channel, start, end - start);
+            ByteSink compare = new ByteSink() {
+                boolean accept(ByteBuffer bytes) {
+                    if (bytes.remaining() > existing.remaining()) {
+                        return false;
+                    }
+                    while (bytes.hasRemaining()) {
+                        if (bytes.get() != existing.get()) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+            };
+            for (CharSequence text : texts) {
+                if (!encode(text, compare)) {
+                    return false;
+                }
+            }
+            return !existing.hasRemaining();
+        }
+    }
+
+    /**
+     * The bytes of a range, read into the heap: a mapped buffer would hold the file until collected, and on Windows
+     * the rewritten descriptor could not be moved over it.
+     */
+    private static ByteBuffer readBytes(FileChannel channel, long position, long count) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) count);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1) {
+                throw new EOFException("Descriptor ended before " + (position + count));
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void transfer(FileChannel source, long position, long count, FileChannel target) throws IOException {
+        while (count > 0) {
+            long transferred = source.transferTo(position, count, target);
+            if (transferred <= 0) {
+                throw new IOException("Could not copy from " + position + ", " + count + " bytes left");
+            }
+            position += transferred;
+            count -= transferred;
+        }
+    }
+
+    private static void writeText(final FileChannel target, CharSequence text) throws IOException {
+        encode(text, new ByteSink() {
+            boolean accept(ByteBuffer bytes) throws IOException {
+                while (bytes.hasRemaining()) {
+                    target.write(bytes);
+                }
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Feeds the UTF-8 encoding of the text to the sink in chunks, stopping early when the sink returns false.
+     */
+    private static boolean encode(CharSequence text, ByteSink sink) throws IOException {
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        CharBuffer in = CharBuffer.wrap(text);
+        ByteBuffer out = ByteBuffer.allocate(8192);
+        CoderResult result;
+        do {
+            result = encoder.encode(in, out, true);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (!drain(out, sink)) {
+                return false;
+            }
+        } while (result.isOverflow());
+        do {
+            result = encoder.flush(out);
+            if (!drain(out, sink)) {
+                return false;
+            }
+        } while (result.isOverflow());
+        return true;
+    }
+
+    private static boolean drain(ByteBuffer out, ByteSink sink) throws IOException {
+        out.flip();
+        boolean accepted = sink.accept(out);
+        out.clear();
+        return accepted;
+    }
+
+    /**
+     * Replacement of the bytes from {@code start} to {@code end} by the concatenated texts.
+     */
+    static class Edit implements Comparable<Edit> {
+        private final long start;
+        private final long end;
+        private final CharSequence[] texts;
+
+        Edit(long start, long end, CharSequence... texts) {
+            this.start = start;
+            this.end = end;
+            this.texts = texts;
+        }
+
+        public int compareTo(Edit other) {
+            return Long.compare(start, other.start);
+        }
+    }
+
+    /**
+     * Locks the descriptors, in path order, against other threads and other processes until closed: a JVM wide
+     * lock per path, then a file lock on a companion file in the temp directory, named by the SHA-256 of the path
+     * (a lock file next to a descriptor would end up in the war).
+     */
+    static Lock lock(File... files) throws IOException {
+        Set<String> paths = new TreeSet<>();
+        for (File file : files) {
+            paths.add(file.getCanonicalPath());
+        }
+        Lock lock = new Lock();
+        try {
+            for (String path : paths) {
+                lock.acquire(path);
+            }
+        } catch (IOException | RuntimeException e) {
+            lock.close();
+            throw e;
+        }
+        return lock;
+    }
+
+    static class Lock implements Closeable {
+        private static final ConcurrentMap<String, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+        private final Deque<ReentrantLock> held = new ArrayDeque<>();
+        private final Deque<FileChannel> channels = new ArrayDeque<>();
+
+        private void acquire(String path) throws IOException {
+            ReentrantLock lock = new ReentrantLock();
+            ReentrantLock existing = LOCKS.putIfAbsent(path, lock);
+            lock = existing != null ? existing : lock;
+            lock.lock();
+            held.push(lock);
+            File lockFile = new File(System.getProperty("java.io.tmpdir"),
+                    "web-mapping-" + new Fingerprint().add(path).toHex() + ".lock");
+            FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channels.push(channel);
+            channel.lock();
+        }
+
+        public void close() {
+            while (!channels.isEmpty()) {
+                try {
+                    // closing the channel releases its lock
+                    channels.pop().close();
+                } catch (IOException e) {
+                    // nothing left to release
+                }
+            }
+            while (!held.isEmpty()) {
+                held.pop().unlock();
+            }
+        }
+    }
+
+    private abstract static class ByteSink {
+        abstract boolean accept(ByteBuffer bytes) throws IOException;
+    }
+}
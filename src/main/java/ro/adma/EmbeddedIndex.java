@@ -0,0 +1,42 @@
+package ro.adma;
+
+import java.io.*;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Class summaries written into a library jar at build time by the web_mapping_index goal, so webapps that package
+ * the jar read them instead of scanning its classes.
+ */
+class EmbeddedIndex {
+    static final String PATH = "META-INF/web-mapping.idx";
+
+    private static final int MAGIC = 0x5745424A;
+    private static final int VERSION = 1;
+
+    static List<ClassSummary> read(ZipFile zipFile) throws IOException {
+        ZipEntry entry = zipFile.getEntry(PATH);
+        if (entry == null) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(zipFile.getInputStream(entry)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            return ClassSummary.readAll(in);
+        }
+    }
+
+    static void write(File file, List<ClassSummary> classes) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create directory " + parent);
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            ClassSummary.writeAll(out, classes);
+        }
+    }
+}
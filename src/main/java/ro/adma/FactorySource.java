@@ -0,0 +1,152 @@
+package ro.adma;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * Source of a factory creating the mapped servlets and controllers with {@code new}, keyed by servlet name and by
+ * class name, so neither the container nor the framework instantiates them reflectively on the first request.
+ * <p>
+ * Its ordered class list puts the configured warmup classes first, for a warmup handler to preload in bulk.
+ */
+class FactorySource {
+    private final Map<String, String> classesByKey = new LinkedHashMap<>();
+    private final Set<String> classNames = new TreeSet<>();
+
+    void addServlet(String servletName, String className) {
+        add(servletName, className);
+        add(className, className);
+    }
+
+    void addController(String className) {
+        add(className, className);
+    }
+
+    private void add(String key, String className) {
+        if (!classesByKey.containsKey(key)) {
+            classesByKey.put(key, className);
+        }
+        classNames.add(className);
+    }
+
+    /**
+     * Drops the classes that cannot be created with a public no-arg constructor and returns their names.
+     */
+    List<String> retainInstantiable(ClassLoader loader) {
+        List<String> dropped = new ArrayList<>();
+        for (Iterator<String> it = classNames.iterator(); it.hasNext(); ) {
+            String className = it.next();
+            if (!isInstantiable(loader, className)) {
+                dropped.add(className);
+                it.remove();
+            }
+        }
+        classesByKey.values().retainAll(classNames);
+        return dropped;
+    }
+
+    /**
+     * Whether generated code can create the class with {@code new}: a public, concrete, top level or static nested
+     * class with a public no-arg constructor throwing no checked exception.
+     */
+    static boolean isInstantiable(ClassLoader loader, String className) {
+        try {
+            Class<?> type = Class.forName(className, false, loader);
+            if (!Modifier.isPublic(type.getModifiers()) || Modifier.isAbstract(type.getModifiers()) || type.isInterface()
+                    || (type.getEnclosingClass() != null && !Modifier.isStatic(type.getModifiers()))) {
+                return false;
+            }
+            Constructor<?> constructor = type.getConstructor();
+            return onlyUnchecked(constructor.getExceptionTypes());
+        } catch (ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static boolean onlyUnchecked(Class<?>[] exceptionTypes) {
+        for (Class<?> exceptionType : exceptionTypes) {
+            if (!RuntimeException.class.isAssignableFrom(exceptionType) && !Error.class.isAssignableFrom(exceptionType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int size() {
+        return classNames.size();
+    }
+
+    /**
+     * Class names with those matching the warmup entries first, in entry order, then the rest sorted. An entry
+     * ending in {@code *} is a prefix.
+     */
+    List<String> orderedClasses(List<String> warmup) {
+        List<String> ordered = new ArrayList<>();
+        Set<String> rest = new TreeSet<>(classNames);
+        for (String entry : warmup) {
+            boolean prefix = entry.endsWith("*");
+            String value = prefix ? entry.substring(0, entry.length() - 1) : entry;
+            for (Iterator<String> it = rest.iterator(); it.hasNext(); ) {
+                String className = it.next();
+                if (prefix ? className.startsWith(value) : className.equals(value)) {
+                    ordered.add(className);
+                    it.remove();
+                }
+            }
+        }
+        ordered.addAll(rest);
+        return ordered;
+    }
+
+    String toJavaSource(String qualifiedName, List<String> warmup) {
+        int dot = qualifiedName.lastIndexOf('.');
+        String simpleName = qualifiedName.substring(dot + 1);
+        StringBuilder out = new StringBuilder();
+        if (dot > 0) {
+            out.append("package ").append(qualifiedName.substring(0, dot)).append(";\n\n");
+        }
+        out.append("/**\n * Generated by web-generator-maven-plugin, creates ").append(classNames.size())
+                .append(" mapped servlets and controllers. Do not edit.\n */\n");
+        out.append("public final class ").append(simpleName).append(" {\n\n");
+        out.append("    /**\n     * Mapped classes, warmup classes first.\n     */\n");
+        out.append("    public static final String[] CLASSES = {\n");
+        for (String className : orderedClasses(warmup)) {
+            out.append("            ").append(UrlTrie.javaString(className)).append(",\n");
+        }
+        out.append("    };\n\n");
+        out.append("    private ").append(simpleName).append("() {\n    }\n\n");
+        out.append("    /**\n     * A new instance for a servlet name or class name, or null when it is not mapped.\n     */\n");
+        out.append("    public static Object newInstance(String name) {\n");
+        out.append("        switch (name) {\n");
+        Map<String, List<String>> keysByClass = new TreeMap<>();
+        for (Map.Entry<String, String> entry : classesByKey.entrySet()) {
+            if (!keysByClass.containsKey(entry.getValue())) {
+                keysByClass.put(entry.getValue(), new ArrayList<String>());
+            }
+            keysByClass.get(entry.getValue()).add(entry.getKey());
+        }
+        for (Map.Entry<String, List<String>> entry : keysByClass.entrySet()) {
+            for (String key : entry.getValue()) {
+                out.append("            case ").append(UrlTrie.javaString(key)).append(":\n");
+            }
+            out.append("                return new ").append(entry.getKey().replace('$', '.')).append("();\n");
+        }
+        out.append("            default:\n                return null;\n");
+        out.append("        }\n    }\n\n");
+        out.append("    /**\n     * Loads and initializes the first {@code count} classes of {@link #CLASSES}, returning how many were loaded.\n     */\n");
+        out.append("    public static int preload(int count) {\n");
+        out.append("        ClassLoader loader = ").append(simpleName).append(".class.getClassLoader();\n");
+        out.append("        int loaded = 0;\n");
+        out.append("        for (int i = 0; i < Math.min(count, CLASSES.length); i++) {\n");
+        out.append("            try {\n");
+        out.append("                Class.forName(CLASSES[i], true, loader);\n");
+        out.append("                loaded++;\n");
+        out.append("            } catch (ClassNotFoundException | LinkageError e) {\n");
+        out.append("                // a warmup must not fail the instance\n");
+        out.append("            }\n");
+        out.append("        }\n");
+        out.append("        return loaded;\n    }\n}\n");
+        return out.toString();
+    }
+}
@@ -0,0 +1,107 @@
+package ro.adma;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * SHA-256 over the plugin configuration, the scanned inputs and the generated descriptor blocks, stored in the
+ * build directory so an unchanged build can skip the scan. Files contribute their path, length and modification
+ * time, so no class or jar is read to compute it.
+ */
+class Fingerprint {
+    private final MessageDigest digest;
+
+    Fingerprint() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    Fingerprint add(String value) {
+        digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        return this;
+    }
+
+    /**
+     * Adds a jar or a class directory, walking directories in name order with one stat per file.
+     */
+    Fingerprint addFile(File file) {
+        return addFile(file, attributes(file));
+    }
+
+    private Fingerprint addFile(File file, BasicFileAttributes attributes) {
+        add(file.getPath());
+        if (attributes != null && attributes.isDirectory()) {
+            File[] files = file.listFiles();
+            if (files != null) {
+                Arrays.sort(files);
+                for (File child : files) {
+                    addFile(child, attributes(child));
+                }
+            }
+        } else if (attributes != null) {
+            add(attributes.size() + ":" + attributes.lastModifiedTime().toMillis());
+        } else {
+            // what File reports for a missing file
+            add("0:0");
+        }
+        return this;
+    }
+
+    private static BasicFileAttributes attributes(File file) {
+        try {
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Adds the current content between the markers of a descriptor, or only its name when it has no generated block.
+     */
+    Fingerprint addBlock(File descriptor, String startMark, String endMark) throws IOException {
+        add(descriptor.getPath());
+        if (descriptor.isFile()) {
+            DescriptorWriter.open(descriptor, startMark, endMark).digest(startMark, endMark, digest);
+        }
+        digest.update((byte) 0);
+        return this;
+    }
+
+    String toHex() {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    static String read(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            return in.readLine();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    static void write(File file, String fingerprint) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create directory " + parent);
+        }
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            out.write(fingerprint);
+        }
+    }
+}
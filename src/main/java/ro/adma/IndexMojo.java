@@ -0,0 +1,61 @@
+package ro.adma;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@Mojo(name = "web_mapping_index", defaultPhase = LifecyclePhase.PROCESS_CLASSES, threadSafe = true)
+public class IndexMojo extends AbstractMojo {
+
+    @Parameter(property = "project", required = true, readonly = true)
+    private MavenProject mavenProject;
+
+    public IndexMojo() {
+    }
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        File classDirectory = new File(mavenProject.getBuild().getOutputDirectory());
+        if (!classDirectory.isDirectory()) {
+            getLog().warn(String.format("Index is skipping because %s was not found", classDirectory));
+            return;
+        }
+        List<ClassSummary> classes = new ArrayList<>();
+        try {
+            readClasses(classDirectory, new ClassFileReader(), classes);
+            File indexFile = new File(classDirectory, EmbeddedIndex.PATH);
+            EmbeddedIndex.write(indexFile, classes);
+            getLog().info("Indexed " + classes.size() + " classes into " + indexFile);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not write " + EmbeddedIndex.PATH + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static void readClasses(File dir, ClassFileReader reader, List<ClassSummary> classes) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.isDirectory()) {
+                readClasses(file, reader, classes);
+            } else if (file.getName().endsWith(".class")) {
+                try (InputStream in = new FileInputStream(file)) {
+                    classes.add(reader.read(in));
+                }
+            }
+        }
+    }
+}
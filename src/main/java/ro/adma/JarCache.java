@@ -0,0 +1,156 @@
+package ro.adma;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Content-addressed store of jar summaries shared by every build on the machine. Entries are keyed by the jar's
+ * SHA-256, written through a temp file and an atomic rename, and evicted least recently used first once the
+ * directory grows over its size limit.
+ */
+class JarCache {
+    private static final int MAGIC = 0x57454243;
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".summary";
+
+    private final File directory;
+    private final long maxBytes;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    JarCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    List<ClassSummary> get(String sha256) {
+        File file = new File(directory, sha256 + SUFFIX);
+        if (!file.isFile()) {
+            misses.incrementAndGet();
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                misses.incrementAndGet();
+                return null;
+            }
+            List<ClassSummary> classes = ClassSummary.readAll(in);
+            file.setLastModified(System.currentTimeMillis());
+            hits.incrementAndGet();
+            return classes;
+        } catch (IOException e) {
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    void put(String sha256, List<ClassSummary> classes) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Could not create directory " + directory);
+        }
+        File file = new File(directory, sha256 + SUFFIX);
+        File tmp = File.createTempFile(sha256, ".tmp", directory);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                ClassSummary.writeAll(out, classes);
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+        evict();
+    }
+
+    private void evict() throws IOException {
+        try (FileChannel channel = FileChannel.open(new File(directory, ".lock").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) {
+                // another build is already evicting
+                return;
+            }
+            try {
+                File[] files = directory.listFiles(new FilenameFilter() {
+                    public boolean accept(File dir, String name) {
+                        return name.endsWith(SUFFIX);
+                    }
+                });
+                if (files == null) {
+                    return;
+                }
+                long total = 0;
+                final Map<File, Long> lastModified = new HashMap<>();
+                for (File file : files) {
+                    total += file.length();
+                    lastModified.put(file, file.lastModified());
+                }
+                if (total <= maxBytes) {
+                    return;
+                }
+                Arrays.sort(files, new Comparator<File>() {
+                    public int compare(File o1, File o2) {
+                        return lastModified.get(o1).compareTo(lastModified.get(o2));
+                    }
+                });
+                for (int i = 0; i < files.length && total > maxBytes; i++) {
+                    long length = files[i].length();
+                    if (files[i].delete()) {
+                        total -= length;
+                    }
+                }
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    static String sha256(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    int getHits() {
+        return hits.get();
+    }
+
+    int getMisses() {
+        return misses.get();
+    }
+}
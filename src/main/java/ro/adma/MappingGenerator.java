@@ -0,0 +1,210 @@
+package ro.adma;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.*;
+
+/**
+ * The generation loops of one target: the controllers' url patterns, as appengine-web.xml system properties or a
+ * url map, the servlets' web.xml mappings or initializer entries, and the security constraint count. Compiling the
+ * generated classes and writing the descriptors is left to the goal.
+ */
+class MappingGenerator {
+    private final Log log;
+    private final OutputTarget target;
+    private final AnnotationStore annotations;
+    private final int annotationTypeId;
+    private final int requiredTypeId;
+    private final boolean urlMapProperties;
+    private ServletInitializerSource initializer;
+    private FactorySource factory;
+
+    private final Set<String> mappedClasses = new TreeSet<>();
+    private final SortedMap<String, String> urlMap = new TreeMap<>();
+    private int urlPatternCounter;
+    private int extendedClassesSkipped;
+    private int securityConstraintCounter;
+
+    /**
+     * @param urlMapProperties whether controllers are mapped by system properties rather than collected in the url map
+     */
+    MappingGenerator(Log log, OutputTarget target, AnnotationStore annotations, boolean urlMapProperties) {
+        this.log = log;
+        this.target = target;
+        this.annotations = annotations;
+        this.annotationTypeId = annotations.typeId(target.getAnnotationClass());
+        this.requiredTypeId = annotations.typeId(target.getRequiredType());
+        this.urlMapProperties = urlMapProperties;
+    }
+
+    /**
+     * Servlets go to the initializer instead of web.xml.
+     */
+    void setInitializer(ServletInitializerSource initializer) {
+        this.initializer = initializer;
+    }
+
+    void setFactory(FactorySource factory) {
+        this.factory = factory;
+    }
+
+    void addControllers(Collection<String> resources, String ls, StringBuilder strAppengineWebXml) {
+        for (String className : sorted(resources)) {
+            if (target.isExcluded(className)) {
+                continue;
+            }
+            HashSet<String> urlPatterns = new HashSet<>();
+            annotations.addValues(annotations.classId(className), annotationTypeId, urlPatterns);
+            if (urlPatterns.size() == 0 && !className.contains("controller")) {
+                continue;
+            }
+            if (urlPatterns.size() == 0) {
+                urlPatterns.add(defaultUrlPattern(className));
+            }
+            mappedClasses.add(className);
+            if (factory != null) {
+                factory.addController(className);
+            }
+            if (urlMapProperties) {
+                addSystemProperty(ls, strAppengineWebXml, className, urlPatterns.toArray(new String[urlPatterns.size()]));
+            } else {
+                addUrlMapping(className, urlPatterns);
+            }
+        }
+    }
+
+    void addServlets(Collection<String> resourcesHttp, String ls, StringBuilder strWebXml) {
+        for (String className : sorted(resourcesHttp)) {
+            if (target.isExcluded(className)) {
+                continue;
+            }
+            String servletName = className.replace('.', '_');
+            LinkedHashSet<String> urlPatterns = new LinkedHashSet<>();
+            annotations.addValues(annotations.classId(className), annotationTypeId, urlPatterns);
+
+            if (urlPatterns.size() == 0 && !className.contains("controller")) {
+                log.info("Servlet mapping skipped: " + className);
+                extendedClassesSkipped++;
+                continue;
+            }
+            if (urlPatterns.size() == 0) {
+                urlPatterns.add(defaultUrlPattern(className));
+            }
+            mappedClasses.add(className);
+            if (factory != null) {
+                factory.addServlet(servletName, className);
+            }
+            if (initializer != null) {
+                initializer.add(servletName, className, urlPatterns);
+            } else {
+                addServletMapping(ls, strWebXml, className, servletName, urlPatterns.toArray(new String[urlPatterns.size()]));
+            }
+            urlPatternCounter += urlPatterns.size();
+        }
+    }
+
+    /**
+     * Counts the url patterns of the controllers requiring the target's admin type.
+     */
+    void countSecurityConstraints(Collection<String> resources) {
+        for (String className : sorted(resources)) {
+            int classId = annotations.classId(className);
+            int urlPatterns = annotations.countValues(classId, annotationTypeId);
+            if (urlPatterns == 0 && !className.contains("controller")) {
+                continue;
+            }
+            if (urlPatterns == 0) {
+                // the default /do/ pattern
+                urlPatterns = 1;
+            }
+            if (annotations.countValues(classId, requiredTypeId) == 1
+                    && annotations.firstValue(classId, requiredTypeId).equals(target.getAdminType())) {
+                securityConstraintCounter += urlPatterns;
+            }
+        }
+    }
+
+    static String defaultUrlPattern(String className) {
+        String urlPattern = className.replace('.', '/');
+        return "/do/" + urlPattern.substring(urlPattern.indexOf("controller/") + "controller/".length());
+    }
+
+    private static List<String> sorted(Collection<String> classNames) {
+        List<String> sorted = new ArrayList<>(classNames);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    private static void addSystemProperty(String ls, StringBuilder str, String className, String... urlPatterns) {
+        //example: <property name="url:/enrol/{clientName}/{clientHash}" value="true"/>
+        for (String urlPattern : urlPatterns) {
+            addProperty(ls, str, "url:" + urlPattern, className);
+        }
+    }
+
+    static void addProperty(String ls, StringBuilder str, String name, String value) {
+        str.append("        <property name=\"");
+        str.append(name);
+        str.append("\" value=\"");
+        str.append(value);
+        str.append("\"/>");
+        str.append(ls);
+    }
+
+    private void addUrlMapping(String className, Collection<String> urlPatterns) {
+        for (String urlPattern : urlPatterns) {
+            String mapped = urlMap.get(urlPattern);
+            if (mapped == null) {
+                urlMap.put(urlPattern, className);
+            } else {
+                log.warn("Url pattern " + urlPattern + " of " + className + " is already mapped to " + mapped);
+            }
+        }
+    }
+
+    private static void addServletMapping(String ls, StringBuilder str, String className, String servletName, String... urlPatterns) {
+        str.append("    <servlet>");
+        str.append("<servlet-name>");
+        str.append(servletName);
+        str.append("</servlet-name>");
+        str.append("<servlet-class>");
+        str.append(className);
+        str.append("</servlet-class>");
+        str.append("</servlet>");
+
+        for (String urlPattern : urlPatterns) {
+            str.append("<servlet-mapping>");
+            str.append("<servlet-name>");
+            str.append(servletName);
+            str.append("</servlet-name>");
+            str.append("<url-pattern>");
+            str.append(urlPattern);
+            str.append("</url-pattern>");
+            str.append("</servlet-mapping>");
+        }
+        str.append(ls);
+    }
+
+    Set<String> getMappedClasses() {
+        return mappedClasses;
+    }
+
+    /**
+     * Url pattern to controller, when controllers are not mapped by system properties.
+     */
+    SortedMap<String, String> getUrlMap() {
+        return urlMap;
+    }
+
+    int getUrlPatternCounter() {
+        return urlPatternCounter;
+    }
+
+    int getExtendedClassesSkipped() {
+        return extendedClassesSkipped;
+    }
+
+    int getSecurityConstraintCounter() {
+        return securityConstraintCounter;
+    }
+}
@@ -0,0 +1,107 @@
+package ro.adma;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * One set of generated descriptors: the webapp directory they are written to and the classes mapped into it.
+ * Configured as an {@code <outputTarget>} of the goal's {@code targets}; a value left out is taken from the goal's
+ * parameter of the same name, so a target only names what differs.
+ */
+public class OutputTarget {
+
+    private String id;
+
+    private String destinations;
+
+    private String extendedClass;
+
+    private String annotationClass;
+
+    private String requiredType;
+
+    private String adminType;
+
+    private String excludeClasses;
+
+    private List<String> extendedClasses = Collections.emptyList();
+
+    private List<String> excludedRules = Collections.emptyList();
+
+    private ClassFilter excluded;
+
+    public OutputTarget() {
+    }
+
+    /**
+     * A target with every value resolved; the excluded classes are names, package prefixes or globs.
+     */
+    OutputTarget(String id, String destinations, List<String> extendedClasses, String annotationClass, String requiredType,
+                 String adminType, Collection<String> excluded) {
+        this.id = id;
+        this.destinations = destinations;
+        this.extendedClasses = extendedClasses;
+        this.annotationClass = annotationClass;
+        this.requiredType = requiredType;
+        this.adminType = adminType;
+        this.excludedRules = new ArrayList<>(excluded);
+        Collections.sort(excludedRules);
+        this.excluded = ClassFilter.excluding(excludedRules);
+    }
+
+    String getId() {
+        return id;
+    }
+
+    String getDestinations() {
+        return destinations;
+    }
+
+    String getExtendedClass() {
+        return extendedClass;
+    }
+
+    String getAnnotationClass() {
+        return annotationClass;
+    }
+
+    String getRequiredType() {
+        return requiredType;
+    }
+
+    String getAdminType() {
+        return adminType;
+    }
+
+    String getExcludeClasses() {
+        return excludeClasses;
+    }
+
+    List<String> getExtendedClasses() {
+        return extendedClasses;
+    }
+
+    boolean isExcluded(String className) {
+        return excluded != null && !excluded.apply(className);
+    }
+
+    String getWebXml() {
+        return destinations + "WEB-INF/web.xml";
+    }
+
+    String getAppengineWebXml() {
+        return destinations + "WEB-INF/appengine-web.xml";
+    }
+
+    File getWebappClassDirectory() {
+        return new File(destinations + "WEB-INF/classes");
+    }
+
+    /**
+     * The values the target's output depends on, for the inputs fingerprint.
+     */
+    List<String> describe() {
+        return Arrays.asList(id, destinations, extendedClasses.toString(), annotationClass, requiredType, adminType,
+                excludedRules.toString());
+    }
+}
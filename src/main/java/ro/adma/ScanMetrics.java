@@ -0,0 +1,185 @@
+package ro.adma;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Wall and CPU time of the goal's phases, per jar scan statistics and named counters, written as a JSON report.
+ * Phase CPU time is the mojo thread's; the scan workers' CPU time is summed per jar. Phases timed on several
+ * threads at once, like the generation of several targets, add up their time.
+ */
+class ScanMetrics {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final Map<String, long[]> phases = new LinkedHashMap<>();
+    private final Map<String, Map<String, Object>> sections = new LinkedHashMap<>();
+    private final List<JarStats> jars = new ArrayList<>();
+
+    static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    Timer start(String phase) {
+        return new Timer(phase);
+    }
+
+    /**
+     * Sets a counter in a section of the report, keeping the order they are first set in.
+     */
+    synchronized void put(String section, String name, Object value) {
+        Map<String, Object> values = sections.get(section);
+        if (values == null) {
+            values = new LinkedHashMap<>();
+            sections.put(section, values);
+        }
+        values.put(name, value);
+    }
+
+    synchronized void addJars(Collection<JarStats> stats) {
+        jars.addAll(stats);
+    }
+
+    synchronized List<JarStats> slowestJars(int count) {
+        List<JarStats> sorted = new ArrayList<>(jars);
+        Collections.sort(sorted, new Comparator<JarStats>() {
+            public int compare(JarStats o1, JarStats o2) {
+                return Long.compare(o2.wallNanos, o1.wallNanos);
+            }
+        });
+        return sorted.subList(0, Math.min(count, sorted.size()));
+    }
+
+    synchronized String toJson() {
+        StringBuilder out = new StringBuilder("{\n  \"phases\": [");
+        String separator = "\n";
+        for (Map.Entry<String, long[]> phase : phases.entrySet()) {
+            out.append(separator).append("    {\"name\": ").append(string(phase.getKey()))
+                    .append(", \"wallMillis\": ").append(millis(phase.getValue()[0]))
+                    .append(", \"cpuMillis\": ").append(millis(phase.getValue()[1])).append('}');
+            separator = ",\n";
+        }
+        out.append("\n  ]");
+        for (Map.Entry<String, Map<String, Object>> section : sections.entrySet()) {
+            out.append(",\n  ").append(string(section.getKey())).append(": {");
+            separator = "\n";
+            for (Map.Entry<String, Object> value : section.getValue().entrySet()) {
+                out.append(separator).append("    ").append(string(value.getKey())).append(": ").append(value(value.getValue()));
+                separator = ",\n";
+            }
+            out.append("\n  }");
+        }
+        out.append(",\n  \"jars\": [");
+        separator = "\n";
+        for (JarStats jar : slowestJars(jars.size())) {
+            out.append(separator).append("    {\"path\": ").append(string(jar.path))
+                    .append(", \"source\": ").append(string(jar.source))
+                    .append(", \"entries\": ").append(jar.entries)
+                    .append(", \"bytesRead\": ").append(jar.bytesRead)
+                    .append(", \"wallMillis\": ").append(millis(jar.wallNanos))
+                    .append(", \"cpuMillis\": ").append(millis(jar.cpuNanos)).append('}');
+            separator = ",\n";
+        }
+        out.append("\n  ]\n}\n");
+        return out.toString();
+    }
+
+    void write(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create directory " + parent);
+        }
+        Files.write(file.toPath(), toJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static String value(Object value) {
+        return value instanceof Number || value instanceof Boolean ? String.valueOf(value) : string(String.valueOf(value));
+    }
+
+    private static String string(String value) {
+        StringBuilder out = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        return out.append('"').toString();
+    }
+
+    class Timer {
+        private final String phase;
+        private final long wall = System.nanoTime();
+        private final long cpu = cpuTime();
+
+        private Timer(String phase) {
+            this.phase = phase;
+        }
+
+        /**
+         * Adds the time since start to the phase; a phase timed several times sums up.
+         */
+        void stop() {
+            long wallTime = System.nanoTime() - wall;
+            long cpuTime = cpuTime() - cpu;
+            synchronized (ScanMetrics.this) {
+                long[] times = phases.get(phase);
+                if (times == null) {
+                    times = new long[2];
+                    phases.put(phase, times);
+                }
+                times[0] += wallTime;
+                times[1] += cpuTime;
+            }
+        }
+    }
+
+    /**
+     * How one jar of the class path was read.
+     */
+    static class JarStats {
+        private final String path;
+        private final String source;
+        private final int entries;
+        private final long bytesRead;
+        private final long wallNanos;
+        private final long cpuNanos;
+
+        JarStats(String path, String source, int entries, long bytesRead, long wallNanos, long cpuNanos) {
+            this.path = path;
+            this.source = source;
+            this.entries = entries;
+            this.bytesRead = bytesRead;
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+        }
+
+        String getPath() {
+            return path;
+        }
+
+        String getSource() {
+            return source;
+        }
+
+        int getEntries() {
+            return entries;
+        }
+
+        long getWallNanos() {
+            return wallNanos;
+        }
+    }
+}
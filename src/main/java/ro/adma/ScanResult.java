@@ -0,0 +1,84 @@
+package ro.adma;
+
+import java.util.*;
+
+/**
+ * Merged view over scanned {@link ClassSummary} entries, answering the same queries the Reflections store did.
+ * <p>
+ * Supertype edges go to a {@link TypeHierarchy} built on the first query, so a summary holds no memory once
+ * added. When annotation types are given, the values of any other annotation are dropped as they arrive.
+ */
+class ScanResult {
+    private static final String OBJECT = "java.lang.Object";
+
+    private TypeHierarchy.Builder edges = new TypeHierarchy.Builder();
+    private TypeHierarchy hierarchy;
+
+    private final Set<String> annotationTypes;
+    private final AnnotationStore annotations = new AnnotationStore();
+    private int classCount;
+
+    ScanResult() {
+        this(null);
+    }
+
+    ScanResult(Collection<String> annotationTypes) {
+        this.annotationTypes = annotationTypes != null ? new HashSet<>(annotationTypes) : null;
+    }
+
+    void add(ClassSummary summary) {
+        classCount++;
+        String className = summary.getName();
+        if (summary.getSuperName() != null && !OBJECT.equals(summary.getSuperName())) {
+            addSubType(summary.getSuperName(), className);
+        }
+        for (String anInterface : summary.getInterfaces()) {
+            addSubType(anInterface, className);
+        }
+        for (Map.Entry<String, List<String>> entry : summary.getAnnotations().entrySet()) {
+            if (annotationTypes != null && !annotationTypes.contains(entry.getKey())) {
+                continue;
+            }
+            for (String value : entry.getValue()) {
+                annotations.put(className, entry.getKey(), value);
+            }
+        }
+    }
+
+    /**
+     * Stands in for the servlet API jar when it is not scanned, so HttpServlet is still a known type.
+     */
+    void addServletApiStubs() {
+        Map<String, List<String>> none = Collections.emptyMap();
+        add(new ClassSummary("javax.servlet.GenericServlet", OBJECT,
+                new String[]{"javax.servlet.Servlet", "javax.servlet.ServletConfig", "java.io.Serializable"}, none));
+        add(new ClassSummary("javax.servlet.http.HttpServlet", "javax.servlet.GenericServlet", null, none));
+    }
+
+    private void addSubType(String superName, String className) {
+        if (hierarchy != null) {
+            throw new IllegalStateException("The type hierarchy was already built");
+        }
+        edges.add(superName, className);
+    }
+
+    TypeHierarchy getHierarchy() {
+        if (hierarchy == null) {
+            hierarchy = edges.build();
+            edges = null;
+        }
+        return hierarchy;
+    }
+
+    Set<String> getSubTypesOf(String... typeNames) {
+        return getHierarchy().getSubTypesOf(typeNames);
+    }
+
+    AnnotationStore getAnnotations() {
+        return annotations;
+    }
+
+    int getClassCount() {
+        return classCount;
+    }
+}
@@ -0,0 +1,80 @@
+package ro.adma;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Source of a ServletContainerInitializer registering the mapped servlets in code, so a metadata-complete webapp
+ * needs neither servlet entries in web.xml nor container annotation scanning.
+ */
+class ServletInitializerSource {
+    static final String SERVICE = "META-INF/services/javax.servlet.ServletContainerInitializer";
+
+    private final List<String[]> servlets = new ArrayList<>();
+
+    void add(String servletName, String className, Collection<String> urlPatterns) {
+        List<String> servlet = new ArrayList<>();
+        servlet.add(servletName);
+        servlet.add(className);
+        servlet.addAll(urlPatterns);
+        servlets.add(servlet.toArray(new String[servlet.size()]));
+    }
+
+    /**
+     * Drops the servlets the container could not create from their class, like {@link FactorySource} does, and
+     * returns their class names.
+     */
+    List<String> retainInstantiable(ClassLoader loader) {
+        List<String> dropped = new ArrayList<>();
+        for (Iterator<String[]> it = servlets.iterator(); it.hasNext(); ) {
+            String className = it.next()[1];
+            if (!FactorySource.isInstantiable(loader, className)) {
+                dropped.add(className);
+                it.remove();
+            }
+        }
+        return dropped;
+    }
+
+    int size() {
+        return servlets.size();
+    }
+
+    String toJavaSource(String qualifiedName) {
+        int dot = qualifiedName.lastIndexOf('.');
+        String simpleName = qualifiedName.substring(dot + 1);
+        StringBuilder out = new StringBuilder();
+        if (dot > 0) {
+            out.append("package ").append(qualifiedName.substring(0, dot)).append(";\n\n");
+        }
+        out.append("import java.util.Set;\n");
+        out.append("import javax.servlet.Servlet;\n");
+        out.append("import javax.servlet.ServletContainerInitializer;\n");
+        out.append("import javax.servlet.ServletContext;\n");
+        out.append("import javax.servlet.ServletRegistration;\n\n");
+        out.append("/**\n * Generated by web-generator-maven-plugin, registers ").append(servlets.size())
+                .append(" servlets. Do not edit.\n */\n");
+        out.append("public final class ").append(simpleName).append(" implements ServletContainerInitializer {\n\n");
+        out.append("    public void onStartup(Set<Class<?>> classes, ServletContext context) {\n");
+        for (String[] servlet : servlets) {
+            out.append("        add(context, ").append(UrlTrie.javaString(servlet[0])).append(", ")
+                    .append(servlet[1].replace('$', '.')).append(".class");
+            for (int i = 2; i < servlet.length; i++) {
+                out.append(", ").append(UrlTrie.javaString(servlet[i]));
+            }
+            out.append(");\n");
+        }
+        out.append("    }\n\n");
+        out.append("    private static void add(ServletContext context, String name, Class<? extends Servlet> servletClass,\n");
+        out.append("                            String... urlPatterns) {\n");
+        out.append("        ServletRegistration.Dynamic registration = context.addServlet(name, servletClass);\n");
+        out.append("        if (registration != null) {\n");
+        out.append("            registration.addMapping(urlPatterns);\n");
+        out.append("        }\n");
+        out.append("    }\n");
+        out.append("}\n");
+        return out.toString();
+    }
+}
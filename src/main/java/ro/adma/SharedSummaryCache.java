@@ -0,0 +1,84 @@
+package ro.adma;
+
+import org.eclipse.aether.SessionData;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Jar summaries shared by the modules of one build, so a jar on the class path of several webapps of a parallel
+ * reactor is read once. They are kept as read, filtered and prefiltered, so modules share a jar only when they
+ * scan it with the same filter key. A module asking for a jar another one is reading waits for that result.
+ */
+class SharedSummaryCache {
+    private static final String KEY = SharedSummaryCache.class.getName();
+
+    private final ConcurrentMap<String, FutureTask<List<ClassSummary>>> jars = new ConcurrentHashMap<>();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * The cache kept in the repository session data, which every module of the build shares; the first module
+     * to ask installs it. A module whose plugin runs in another class realm gets a cache of its own.
+     */
+    static SharedSummaryCache forSession(SessionData data) {
+        Object cache = data.get(KEY);
+        if (cache == null) {
+            data.set(KEY, null, new SharedSummaryCache());
+            cache = data.get(KEY);
+        }
+        return cache instanceof SharedSummaryCache ? (SharedSummaryCache) cache : new SharedSummaryCache();
+    }
+
+    /**
+     * The summaries of the jar, from the reader when no module has asked for this jar (path, size and time) with
+     * this filter key yet. A failed read is not cached.
+     */
+    List<ClassSummary> get(File jar, String filterKey, Callable<List<ClassSummary>> reader) throws IOException {
+        String key = jar.getAbsolutePath() + '|' + jar.length() + '|' + jar.lastModified() + '|' + filterKey;
+        FutureTask<List<ClassSummary>> task = new FutureTask<>(reader);
+        FutureTask<List<ClassSummary>> existing = jars.putIfAbsent(key, task);
+        if (existing == null) {
+            misses.incrementAndGet();
+            task.run();
+            existing = task;
+        } else {
+            hits.incrementAndGet();
+        }
+        try {
+            return existing.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + jar);
+        } catch (ExecutionException e) {
+            jars.remove(key, existing);
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(jar + ": " + cause.getMessage(), cause);
+        }
+    }
+
+    int getHits() {
+        return hits.get();
+    }
+
+    int getMisses() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,120 @@
+package ro.adma;
+
+import org.apache.maven.plugin.logging.Log;
+
+import javax.tools.*;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes generated Java sources and compiles them into the webapp classes with the JDK compiler running Maven.
+ */
+class SourceCompiler {
+    private final Log log;
+    private final File sourceDirectory;
+    private final File classesDirectory;
+    private final List<String> options;
+    private final List<File> sources = new ArrayList<>();
+    private List<String> classpath = new ArrayList<>();
+
+    /**
+     * @param options javac options selecting the language level, see {@link #levelOptions}
+     */
+    SourceCompiler(Log log, File sourceDirectory, File classesDirectory, List<String> options) {
+        this.log = log;
+        this.sourceDirectory = sourceDirectory;
+        this.classesDirectory = classesDirectory;
+        this.options = options;
+    }
+
+    /**
+     * javac options for a release, or a source and target level, so generated classes run on the same JVM as the
+     * webapp; empty when neither release nor target is given.
+     */
+    static List<String> levelOptions(String release, String source, String target) {
+        if (release != null && !release.trim().isEmpty()) {
+            return Arrays.asList("--release", release.trim());
+        }
+        List<String> options = new ArrayList<>();
+        if (target != null && !target.trim().isEmpty()) {
+            options.addAll(Arrays.asList("-source", source != null && !source.trim().isEmpty() ? source.trim() : target.trim()));
+            options.addAll(Arrays.asList("-target", target.trim()));
+        }
+        return options;
+    }
+
+    /**
+     * Classes the generated sources refer to, such as the webapp classes and the servlet API.
+     */
+    void setClasspath(List<String> classpath) {
+        this.classpath = classpath;
+    }
+
+    void add(String qualifiedName, String source) throws IOException {
+        File file = new File(sourceDirectory, qualifiedName.replace('.', File.separatorChar) + ".java");
+        File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create directory " + parent);
+        }
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            out.write(source);
+        }
+        sources.add(file);
+    }
+
+    void compile() throws IOException {
+        if (sources.isEmpty()) {
+            return;
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IOException("No Java compiler available, run Maven with a JDK to generate classes");
+        }
+        if (!classesDirectory.isDirectory() && !classesDirectory.mkdirs()) {
+            throw new IOException("Could not create directory " + classesDirectory);
+        }
+        List<String> arguments = new ArrayList<>(options);
+        arguments.addAll(Arrays.asList("-d", classesDirectory.getPath(), "-encoding", "UTF-8", "-proc:none"));
+        if (!classpath.isEmpty()) {
+            StringBuilder path = new StringBuilder();
+            for (String element : classpath) {
+                path.append(path.length() > 0 ? File.pathSeparator : "").append(element);
+            }
+            arguments.addAll(Arrays.asList("-classpath", path.toString()));
+        }
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            Boolean success = compiler.getTask(null, fileManager, diagnostics, arguments, null,
+                    fileManager.getJavaFileObjectsFromFiles(sources)).call();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if (diagnostic.getKind() == Diagnostic.Kind.WARNING || diagnostic.getKind() == Diagnostic.Kind.MANDATORY_WARNING) {
+                    log.warn(location(diagnostic) + diagnostic.getMessage(null));
+                }
+            }
+            if (!Boolean.TRUE.equals(success)) {
+                StringBuilder message = new StringBuilder("Compiling generated sources failed");
+                for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                    if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                        message.append("\n").append(location(diagnostic)).append(diagnostic.getMessage(null));
+                    }
+                }
+                throw new IOException(message.toString());
+            }
+        }
+        sources.clear();
+    }
+
+    private static String location(Diagnostic<? extends JavaFileObject> diagnostic) {
+        if (diagnostic.getSource() == null) {
+            return "";
+        }
+        return diagnostic.getSource().getName() + ':' + diagnostic.getLineNumber() + ": ";
+    }
+}
@@ -0,0 +1,185 @@
+package ro.adma;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Direct supertype to subtype edges over int type ids, in compressed sparse row form: the subtypes of type
+ * {@code t} are {@code targets[offsets[t]]} to {@code targets[offsets[t + 1] - 1]}. A transitive query walks the
+ * arrays breadth first, in time linear in the edges it reaches, and only allocates its scratch arrays once.
+ * <p>
+ * Built once per scan with a {@link Builder}. The arrays can be exported to a file for inspection; the goal never
+ * reads them back.
+ */
+class TypeHierarchy {
+    private static final int MAGIC = 0x57454254;
+    private static final int VERSION = 1;
+
+    private final String[] names;
+    private final Map<String, Integer> ids;
+    private final int[] offsets;
+    private final int[] targets;
+
+    // scratch for queries; one instance must not be queried by several threads at once
+    private int[] queue;
+    private boolean[] seen;
+
+    private TypeHierarchy(String[] names, int[] offsets, int[] targets) {
+        this.names = names;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.ids = new HashMap<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) {
+            ids.put(names[i], i);
+        }
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    int getEdgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * Id of the type, or -1 when it appears in no edge.
+     */
+    int id(String typeName) {
+        Integer id = ids.get(typeName);
+        return id != null ? id : -1;
+    }
+
+    String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * Writes the ids of the transitive subtypes of the roots to {@code out}, which must hold {@link #size()} ids, and
+     * returns how many there are. A type reachable from several roots, or by several paths, is written once.
+     * Unknown roots (-1) are ignored.
+     */
+    int subTypes(int[] roots, int[] out) {
+        if (queue == null || queue.length < names.length + roots.length) {
+            queue = new int[names.length + roots.length];
+            seen = new boolean[names.length];
+        }
+        int head = 0;
+        int tail = 0;
+        for (int root : roots) {
+            if (root >= 0) {
+                queue[tail++] = root;
+            }
+        }
+        int count = 0;
+        // the roots are only marked once reached as a subtype, like a walk from each root separately would do
+        while (head < tail) {
+            int type = queue[head++];
+            for (int i = offsets[type]; i < offsets[type + 1]; i++) {
+                int subType = targets[i];
+                if (!seen[subType]) {
+                    seen[subType] = true;
+                    out[count++] = subType;
+                    queue[tail++] = subType;
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            seen[out[i]] = false;
+        }
+        return count;
+    }
+
+    Set<String> getSubTypesOf(String... typeNames) {
+        int[] roots = new int[typeNames.length];
+        for (int i = 0; i < typeNames.length; i++) {
+            roots[i] = id(typeNames[i]);
+        }
+        int[] out = new int[names.length];
+        int count = subTypes(roots, out);
+        Set<String> result = new HashSet<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            result.add(names[out[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * The typeHierarchyFile export: magic, version, type and edge counts, the type names, then the offsets and targets.
+     */
+    byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(names.length);
+            out.writeInt(targets.length);
+            for (String name : names) {
+                out.writeUTF(name);
+            }
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            for (int target : targets) {
+                out.writeInt(target);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Collects edges as pairs of interned ids, two ints each, and sorts them into rows by supertype on build.
+     */
+    static class Builder {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private String[] names = new String[256];
+        private int[] supers = new int[256];
+        private int[] subs = new int[256];
+        private int edgeCount;
+
+        void add(String superName, String subName) {
+            if (edgeCount == supers.length) {
+                supers = Arrays.copyOf(supers, edgeCount * 2);
+                subs = Arrays.copyOf(subs, edgeCount * 2);
+            }
+            supers[edgeCount] = id(superName);
+            subs[edgeCount] = id(subName);
+            edgeCount++;
+        }
+
+        private int id(String typeName) {
+            Integer id = ids.get(typeName);
+            if (id == null) {
+                id = ids.size();
+                ids.put(typeName, id);
+                if (id == names.length) {
+                    names = Arrays.copyOf(names, id * 2);
+                }
+                names[id] = typeName;
+            }
+            return id;
+        }
+
+        /**
+         * Counting sort of the edges by supertype; duplicate edges are kept, queries skip them.
+         */
+        TypeHierarchy build() {
+            int types = ids.size();
+            int[] offsets = new int[types + 1];
+            for (int i = 0; i < edgeCount; i++) {
+                offsets[supers[i] + 1]++;
+            }
+            for (int t = 0; t < types; t++) {
+                offsets[t + 1] += offsets[t];
+            }
+            int[] targets = new int[edgeCount];
+            int[] next = Arrays.copyOf(offsets, types);
+            for (int i = 0; i < edgeCount; i++) {
+                targets[next[supers[i]]++] = subs[i];
+            }
+            return new TypeHierarchy(Arrays.copyOf(names, types), offsets, targets);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package ro.adma;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * The url pattern to controller map as a sorted binary class path resource in WEB-INF/classes, read by a generated
+ * accessor class on its first lookup instead of being loaded into the system properties at every instance start.
+ * <p>
+ * Layout: magic, version, entry count and class count ints; an (pattern offset, class index) int pair per entry in
+ * pattern order; an offset int per class name; then the strings as an unsigned short length and UTF-8 bytes.
+ */
+class UrlMapResource {
+    static final String RESOURCE = "web-mapping.urlmap";
+    static final String PROPERTY = "web-mapping.urlmap";
+
+    private static final int MAGIC = 0x57454255;
+    private static final int VERSION = 1;
+
+    static byte[] toBytes(SortedMap<String, String> urlMap) throws IOException {
+        Map<String, Integer> classIndexes = new LinkedHashMap<>();
+        for (String className : urlMap.values()) {
+            if (!classIndexes.containsKey(className)) {
+                classIndexes.put(className, classIndexes.size());
+            }
+        }
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        int base = 16 + 8 * urlMap.size() + 4 * classIndexes.size();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(urlMap.size());
+        out.writeInt(classIndexes.size());
+        for (Map.Entry<String, String> entry : urlMap.entrySet()) {
+            out.writeInt(base + writeString(strings, entry.getKey()));
+            out.writeInt(classIndexes.get(entry.getValue()));
+        }
+        for (String className : classIndexes.keySet()) {
+            out.writeInt(base + writeString(strings, className));
+        }
+        strings.writeTo(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static int writeString(ByteArrayOutputStream strings, String value) throws IOException {
+        int offset = strings.size();
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        if (utf8.length > 0xffff) {
+            throw new IOException("Url map string too long: " + value.substring(0, 64) + "...");
+        }
+        strings.write(utf8.length >>> 8);
+        strings.write(utf8.length);
+        strings.write(utf8);
+        return offset;
+    }
+
+    /**
+     * Writes the map unless the file already holds the same bytes; returns whether it was written.
+     */
+    static boolean write(File file, SortedMap<String, String> urlMap) throws IOException {
+        byte[] bytes = toBytes(urlMap);
+        if (file.isFile() && file.length() == bytes.length && Arrays.equals(Files.readAllBytes(file.toPath()), bytes)) {
+            return false;
+        }
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create directory " + parent);
+        }
+        Files.write(file.toPath(), bytes);
+        return true;
+    }
+
+    /**
+     * Java source of the accessor, looking patterns up by binary search over the memory mapped file. The map is the
+     * {@link #RESOURCE} class path resource, or the absolute path in the {@link #PROPERTY} system property. A map that
+     * cannot be read fails the lookup with an IllegalStateException, and the next lookup tries again.
+     */
+    static String toJavaSource(String qualifiedName) {
+        int dot = qualifiedName.lastIndexOf('.');
+        String simpleName = qualifiedName.substring(dot + 1);
+        StringBuilder out = new StringBuilder();
+        if (dot > 0) {
+            out.append("package ").append(qualifiedName.substring(0, dot)).append(";\n\n");
+        }
+        out.append("import java.io.ByteArrayOutputStream;\n");
+        out.append("import java.io.IOException;\n");
+        out.append("import java.io.InputStream;\n");
+        out.append("import java.net.URISyntaxException;\n");
+        out.append("import java.net.URL;\n");
+        out.append("import java.nio.ByteBuffer;\n");
+        out.append("import java.nio.channels.FileChannel;\n");
+        out.append("import java.nio.charset.StandardCharsets;\n");
+        out.append("import java.nio.file.Path;\n");
+        out.append("import java.nio.file.Paths;\n");
+        out.append("import java.nio.file.StandardOpenOption;\n\n");
+        out.append("/**\n * Generated by web-generator-maven-plugin. Looks controllers up in the url map, the ")
+                .append(RESOURCE).append(" class path\n * resource or the absolute path in the ").append(PROPERTY)
+                .append(" system property, loaded on the first call. Do not edit.\n */\n");
+        out.append("public final class ").append(simpleName).append(" {\n");
+        out.append("    public static final String PROPERTY = ").append(UrlTrie.javaString(PROPERTY)).append(";\n");
+        out.append("    public static final String RESOURCE = ").append(UrlTrie.javaString(RESOURCE)).append(";\n\n");
+        out.append("    private static volatile ByteBuffer data;\n\n");
+        out.append("    private ").append(simpleName).append("() {\n    }\n\n");
+        out.append("    /**\n     * Returns the controller mapped to the url pattern, or null.\n     */\n");
+        out.append("    public static String get(String pattern) {\n");
+        out.append("        int low = 0;\n");
+        out.append("        int high = size() - 1;\n");
+        out.append("        while (low <= high) {\n");
+        out.append("            int middle = (low + high) >>> 1;\n");
+        out.append("            int compare = pattern(middle).compareTo(pattern);\n");
+        out.append("            if (compare < 0) {\n                low = middle + 1;\n");
+        out.append("            } else if (compare > 0) {\n                high = middle - 1;\n");
+        out.append("            } else {\n                return className(middle);\n            }\n");
+        out.append("        }\n        return null;\n    }\n\n");
+        out.append("    public static int size() {\n        return data().getInt(8);\n    }\n\n");
+        out.append("    /**\n     * The url pattern at the index, in sorted order.\n     */\n");
+        out.append("    public static String pattern(int index) {\n");
+        out.append("        return string(data().getInt(16 + 8 * index));\n    }\n\n");
+        out.append("    public static String className(int index) {\n");
+        out.append("        ByteBuffer buffer = data();\n");
+        out.append("        int classes = 16 + 8 * buffer.getInt(8);\n");
+        out.append("        return string(buffer.getInt(classes + 4 * buffer.getInt(16 + 8 * index + 4)));\n    }\n\n");
+        out.append("    private static String string(int offset) {\n");
+        out.append("        ByteBuffer buffer = data().duplicate();\n");
+        out.append("        byte[] bytes = new byte[buffer.getShort(offset) & 0xffff];\n");
+        out.append("        buffer.position(offset + 2);\n");
+        out.append("        buffer.get(bytes);\n");
+        out.append("        return new String(bytes, StandardCharsets.UTF_8);\n    }\n\n");
+        out.append("    private static ByteBuffer data() {\n");
+        out.append("        ByteBuffer buffer = data;\n");
+        out.append("        if (buffer == null) {\n");
+        out.append("            synchronized (").append(simpleName).append(".class) {\n");
+        out.append("                buffer = data;\n");
+        out.append("                if (buffer == null) {\n");
+        out.append("                    buffer = load();\n");
+        out.append("                    data = buffer;\n");
+        out.append("                }\n");
+        out.append("            }\n");
+        out.append("        }\n");
+        out.append("        return buffer;\n    }\n\n");
+        out.append("    private static ByteBuffer load() {\n");
+        out.append("        String path = System.getProperty(PROPERTY);\n");
+        out.append("        ByteBuffer buffer;\n");
+        out.append("        try {\n");
+        out.append("            if (path != null) {\n");
+        out.append("                Path file = Paths.get(path);\n");
+        out.append("                if (!file.isAbsolute()) {\n");
+        out.append("                    throw new IllegalStateException(PROPERTY + \" must be an absolute path, not \" + path);\n");
+        out.append("                }\n");
+        out.append("                buffer = map(file);\n");
+        out.append("            } else {\n");
+        out.append("                URL url = ").append(simpleName).append(".class.getClassLoader().getResource(RESOURCE);\n");
+        out.append("                if (url == null) {\n");
+        out.append("                    throw new IllegalStateException(\"Url map \" + RESOURCE + \" was not found on the class path\");\n");
+        out.append("                }\n");
+        out.append("                path = url.toString();\n");
+        out.append("                buffer = \"file\".equals(url.getProtocol()) ? map(Paths.get(url.toURI())) : read(url);\n");
+        out.append("            }\n");
+        out.append("        } catch (IOException | URISyntaxException e) {\n");
+        out.append("            throw new IllegalStateException(\"Could not read url map \" + path + \": \" + e.getMessage(), e);\n");
+        out.append("        }\n");
+        out.append("        if (buffer.limit() < 16 || buffer.getInt(0) != ").append(String.format("0x%08X", MAGIC))
+                .append(" || buffer.getInt(4) != ").append(VERSION).append(") {\n");
+        out.append("            throw new IllegalStateException(path + \" is not a url map\");\n");
+        out.append("        }\n");
+        out.append("        return buffer;\n    }\n\n");
+        out.append("    private static ByteBuffer map(Path file) throws IOException {\n");
+        out.append("        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {\n");
+        out.append("            try {\n");
+        out.append("                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());\n");
+        out.append("            } catch (IOException | UnsupportedOperationException | SecurityException e) {\n");
+        out.append("                // sandboxes without mmap: read it onto the heap\n");
+        out.append("                ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());\n");
+        out.append("                while (buffer.hasRemaining() && channel.read(buffer) != -1) {\n                }\n");
+        out.append("                buffer.flip();\n");
+        out.append("                return buffer;\n");
+        out.append("            }\n");
+        out.append("        }\n    }\n\n");
+        out.append("    private static ByteBuffer read(URL url) throws IOException {\n");
+        out.append("        ByteArrayOutputStream bytes = new ByteArrayOutputStream();\n");
+        out.append("        try (InputStream in = url.openStream()) {\n");
+        out.append("            byte[] chunk = new byte[8192];\n");
+        out.append("            int read;\n");
+        out.append("            while ((read = in.read(chunk)) != -1) {\n");
+        out.append("                bytes.write(chunk, 0, read);\n");
+        out.append("            }\n");
+        out.append("        }\n");
+        out.append("        return ByteBuffer.wrap(bytes.toByteArray());\n    }\n}\n");
+        return out.toString();
+    }
+}
@@ -0,0 +1,266 @@
+package ro.adma;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Segment trie of the controller url patterns, generated into a Java class so requests are routed in one pass over
+ * the path segments, without iterating the url: system properties or matching regular expressions.
+ * <p>
+ * Literal segments are matched by a string switch per node, {@code {name}} segments capture into a slot whose index
+ * is fixed at build time and a trailing {@code *} matches the rest of the path. Literals win over captures and
+ * captures over the wildcard, falling back to the next branch when one has no route.
+ */
+class UrlTrie {
+    private final Node root = new Node();
+    private final List<Route> routes = new ArrayList<>();
+    private int maxCaptures;
+
+    /**
+     * Returns false when the pattern was already added.
+     */
+    boolean add(String pattern, String className) {
+        Node node = root;
+        List<String> names = new ArrayList<>();
+        List<String> segments = segments(pattern);
+        for (int i = 0; i < segments.size(); i++) {
+            String segment = segments.get(i);
+            if (segment.equals("*") && i == segments.size() - 1) {
+                if (node.rest != null) {
+                    return false;
+                }
+                node.rest = added(pattern, className, names);
+                return true;
+            }
+            if (isCapture(segment)) {
+                names.add(segment.substring(1, segment.length() - 1));
+                if (node.capture == null) {
+                    node.capture = new Node();
+                }
+                node = node.capture;
+            } else {
+                Node child = node.literals.get(segment);
+                if (child == null) {
+                    child = new Node();
+                    node.literals.put(segment, child);
+                }
+                node = child;
+            }
+        }
+        if (node.route != null) {
+            return false;
+        }
+        node.route = added(pattern, className, names);
+        return true;
+    }
+
+    private Route added(String pattern, String className, List<String> names) {
+        Route route = new Route(routes.size(), pattern, className, names);
+        routes.add(route);
+        maxCaptures = Math.max(maxCaptures, names.size());
+        return route;
+    }
+
+    int getRouteCount() {
+        return routes.size();
+    }
+
+    /**
+     * Path segments after the leading slash; the generated router splits request paths the same way.
+     */
+    static List<String> segments(String path) {
+        List<String> segments = new ArrayList<>();
+        int start = path.startsWith("/") ? 1 : 0;
+        if (start == path.length()) {
+            return segments;
+        }
+        for (int end = path.indexOf('/', start); end != -1; end = path.indexOf('/', start)) {
+            segments.add(path.substring(start, end));
+            start = end + 1;
+        }
+        segments.add(path.substring(start));
+        return segments;
+    }
+
+    private static boolean isCapture(String segment) {
+        return segment.length() > 2 && segment.charAt(0) == '{' && segment.charAt(segment.length() - 1) == '}';
+    }
+
+    /**
+     * Java source of a class routing request paths with a static {@code route(String)} method.
+     */
+    String toJavaSource(String qualifiedName) {
+        int dot = qualifiedName.lastIndexOf('.');
+        String simpleName = qualifiedName.substring(dot + 1);
+        StringBuilder out = new StringBuilder();
+        if (dot > 0) {
+            out.append("package ").append(qualifiedName.substring(0, dot)).append(";\n\n");
+        }
+        out.append("/**\n * Generated by web-generator-maven-plugin from the url patterns of ").append(routes.size())
+                .append(" routes. Do not edit.\n */\n");
+        out.append("public final class ").append(simpleName).append(" {\n\n");
+        appendMatchClass(out);
+        out.append("    private ").append(simpleName).append("() {\n    }\n\n");
+        out.append("    /**\n     * Returns the route of the path, or null when no pattern matches.\n     */\n");
+        out.append("    public static Match route(String path) {\n");
+        out.append("        return n0(split(path), 0, new String[").append(maxCaptures).append("]);\n");
+        out.append("    }\n\n");
+        appendSplit(out);
+
+        for (Route route : routes) {
+            out.append("    private static final String[] P").append(route.index).append(" = {");
+            for (int j = 0; j < route.names.size(); j++) {
+                out.append(j > 0 ? ", " : "").append(javaString(route.names.get(j)));
+            }
+            out.append("};\n");
+        }
+        out.append('\n');
+        appendNode(out, root, new int[]{0}, 0);
+        out.append("}\n");
+        return out.toString();
+    }
+
+    private int appendNode(StringBuilder out, Node node, int[] nextId, int captures) {
+        int id = nextId[0]++;
+        StringBuilder children = new StringBuilder();
+        out.append("    private static Match n").append(id).append("(String[] s, int i, String[] v) {\n");
+        out.append("        if (i == s.length) {\n");
+        if (node.route != null) {
+            out.append("            return ").append(newMatch(node.route, "null")).append(";\n");
+        } else if (node.rest != null) {
+            out.append("            return ").append(newMatch(node.rest, "\"\"")).append(";\n");
+        } else {
+            out.append("            return null;\n");
+        }
+        out.append("        }\n");
+        if (!node.literals.isEmpty() || node.capture != null) {
+            out.append("        Match m;\n");
+        }
+        if (!node.literals.isEmpty()) {
+            out.append("        switch (s[i]) {\n");
+            for (Map.Entry<String, Node> entry : node.literals.entrySet()) {
+                int child = appendNode(children, entry.getValue(), nextId, captures);
+                out.append("            case ").append(javaString(entry.getKey())).append(":\n");
+                out.append("                m = n").append(child).append("(s, i + 1, v);\n");
+                out.append("                if (m != null) {\n                    return m;\n                }\n");
+                out.append("                break;\n");
+            }
+            out.append("        }\n");
+        }
+        if (node.capture != null) {
+            int child = appendNode(children, node.capture, nextId, captures + 1);
+            out.append("        v[").append(captures).append("] = s[i];\n");
+            out.append("        m = n").append(child).append("(s, i + 1, v);\n");
+            out.append("        if (m != null) {\n            return m;\n        }\n");
+        }
+        if (node.rest != null) {
+            out.append("        return ").append(newMatch(node.rest, "join(s, i)")).append(";\n");
+        } else {
+            out.append("        return null;\n");
+        }
+        out.append("    }\n\n");
+        out.append(children);
+        return id;
+    }
+
+    private static String newMatch(Route route, String rest) {
+        return "new Match(" + javaString(route.className) + ", " + javaString(route.pattern) + ", P" + route.index + ", v, " + rest + ")";
+    }
+
+    private static void appendMatchClass(StringBuilder out) {
+        out.append("    public static final class Match {\n");
+        out.append("        private final String className;\n");
+        out.append("        private final String pattern;\n");
+        out.append("        private final String[] names;\n");
+        out.append("        private final String[] values;\n");
+        out.append("        private final String rest;\n\n");
+        out.append("        Match(String className, String pattern, String[] names, String[] values, String rest) {\n");
+        out.append("            this.className = className;\n");
+        out.append("            this.pattern = pattern;\n");
+        out.append("            this.names = names;\n");
+        out.append("            this.values = java.util.Arrays.copyOf(values, names.length);\n");
+        out.append("            this.rest = rest;\n");
+        out.append("        }\n\n");
+        out.append("        public String getClassName() {\n            return className;\n        }\n\n");
+        out.append("        public String getPattern() {\n            return pattern;\n        }\n\n");
+        out.append("        public int getParameterCount() {\n            return names.length;\n        }\n\n");
+        out.append("        public String getParameterName(int slot) {\n            return names[slot];\n        }\n\n");
+        out.append("        public String getParameter(int slot) {\n            return values[slot];\n        }\n\n");
+        out.append("        public String getParameter(String name) {\n");
+        out.append("            for (int i = 0; i < names.length; i++) {\n");
+        out.append("                if (names[i].equals(name)) {\n                    return values[i];\n                }\n");
+        out.append("            }\n            return null;\n        }\n\n");
+        out.append("        /**\n         * The path matched by a trailing *, or null for other patterns.\n         */\n");
+        out.append("        public String getRest() {\n            return rest;\n        }\n");
+        out.append("    }\n\n");
+    }
+
+    private static void appendSplit(StringBuilder out) {
+        out.append("    static String[] split(String path) {\n");
+        out.append("        int start = path.startsWith(\"/\") ? 1 : 0;\n");
+        out.append("        if (start == path.length()) {\n            return new String[0];\n        }\n");
+        out.append("        int count = 1;\n");
+        out.append("        for (int i = start; i < path.length(); i++) {\n");
+        out.append("            if (path.charAt(i) == '/') {\n                count++;\n            }\n        }\n");
+        out.append("        String[] segments = new String[count];\n");
+        out.append("        for (int n = 0, end; n < count; n++, start = end + 1) {\n");
+        out.append("            end = n == count - 1 ? path.length() : path.indexOf('/', start);\n");
+        out.append("            segments[n] = path.substring(start, end);\n");
+        out.append("        }\n");
+        out.append("        return segments;\n");
+        out.append("    }\n\n");
+        out.append("    private static String join(String[] s, int from) {\n");
+        out.append("        StringBuilder rest = new StringBuilder(s[from]);\n");
+        out.append("        for (int i = from + 1; i < s.length; i++) {\n");
+        out.append("            rest.append('/').append(s[i]);\n        }\n");
+        out.append("        return rest.toString();\n");
+        out.append("    }\n\n");
+    }
+
+    static String javaString(String value) {
+        StringBuilder out = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else if (c == '\r') {
+                out.append("\\r");
+            } else if (c == '\t') {
+                out.append("\\t");
+            } else if (c < 0x20) {
+                // javac turns unicode escapes into characters before reading the literal, a line break would end it
+                out.append(String.format("\\%03o", (int) c));
+            } else if (c > 0x7e) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        return out.append('"').toString();
+    }
+
+    private static class Node {
+        final Map<String, Node> literals = new TreeMap<>();
+        Node capture;
+        Route route;
+        Route rest;
+    }
+
+    private static class Route {
+        final int index;
+        final String pattern;
+        final String className;
+        final List<String> names;
+
+        Route(int index, String pattern, String className, List<String> names) {
+            this.index = index;
+            this.pattern = pattern;
+            this.className = className;
+            this.names = names;
+        }
+    }
+}
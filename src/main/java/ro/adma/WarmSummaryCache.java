@@ -0,0 +1,138 @@
+package ro.adma;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Jar summaries kept in the plugin's class loader for the life of the JVM, so builds repeated in a long running
+ * one, like the Maven daemon's, do not read unchanged jars again. Summaries are kept as read, filtered and
+ * prefiltered, under the jar's path and filter key. An entry is valid while the jar's size, modification time and
+ * file key are those it was read with (and its SHA-256, when verifying). The cache holds at most a number of
+ * classes, evicting the least recently used jars first, and only softly, so the collector can clear it under
+ * memory pressure.
+ */
+class WarmSummaryCache {
+    private static final WarmSummaryCache INSTANCE = new WarmSummaryCache();
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private int maxClasses = 100000;
+    private int classes;
+    private boolean verifyHash;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private final AtomicInteger evictions = new AtomicInteger();
+
+    static WarmSummaryCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Applies the settings of the current build; a lower limit evicts right away.
+     */
+    synchronized void configure(int maxClasses, boolean verifyHash) {
+        this.maxClasses = maxClasses;
+        this.verifyHash = verifyHash;
+        evict();
+    }
+
+    List<ClassSummary> get(File jar, String filterKey) throws IOException {
+        String key = jar.getAbsolutePath() + '|' + filterKey;
+        Entry entry;
+        boolean verify;
+        synchronized (this) {
+            entry = entries.get(key);
+            verify = verifyHash;
+        }
+        List<ClassSummary> summaries = entry != null ? entry.summaries.get() : null;
+        if (summaries == null || !entry.identity.equals(identity(jar))
+                || (verify && (entry.sha256 == null || !entry.sha256.equals(JarCache.sha256(jar))))) {
+            if (entry != null) {
+                remove(key, entry);
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return summaries;
+    }
+
+    void put(File jar, String filterKey, List<ClassSummary> summaries) throws IOException {
+        boolean verify;
+        synchronized (this) {
+            verify = verifyHash;
+        }
+        Entry entry = new Entry(identity(jar), summaries, verify ? JarCache.sha256(jar) : null);
+        synchronized (this) {
+            Entry previous = entries.put(jar.getAbsolutePath() + '|' + filterKey, entry);
+            if (previous != null) {
+                classes -= previous.weight;
+            }
+            classes += entry.weight;
+            evict();
+        }
+    }
+
+    private synchronized void remove(String key, Entry entry) {
+        if (entries.get(key) == entry) {
+            entries.remove(key);
+            classes -= entry.weight;
+        }
+    }
+
+    private void evict() {
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext() && classes > maxClasses; ) {
+            Entry entry = it.next();
+            it.remove();
+            classes -= entry.weight;
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static String identity(File jar) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(jar.toPath(), BasicFileAttributes.class);
+        return attributes.size() + "|" + attributes.lastModifiedTime().toMillis() + "|" + attributes.fileKey();
+    }
+
+    int getHits() {
+        return hits.get();
+    }
+
+    int getMisses() {
+        return misses.get();
+    }
+
+    int getEvictions() {
+        return evictions.get();
+    }
+
+    synchronized int getJarCount() {
+        return entries.size();
+    }
+
+    synchronized int getClassCount() {
+        return classes;
+    }
+
+    private static class Entry {
+        private final String identity;
+        private final SoftReference<List<ClassSummary>> summaries;
+        private final int weight;
+        // null when read without verifying, such an entry is not trusted by a verifying build
+        private final String sha256;
+
+        Entry(String identity, List<ClassSummary> summaries, String sha256) {
+            this.identity = identity;
+            this.summaries = new SoftReference<>(summaries);
+            this.weight = Math.max(1, summaries.size());
+            this.sha256 = sha256;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package ro.adma;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the mapping goal, then again whenever class files or WEB-INF/lib jars change, until interrupted. Bursts of
+ * compiler output are collected until the directories stay quiet for {@code watchDebounceMillis}. Every run is
+ * incremental with the class index kept in memory, so only the changed class files are parsed, and the
+ * descriptors and generated files are only rewritten when their content changes.
+ */
+@Mojo(name = "web_mapping_watch", requiresDependencyResolution = ResolutionScope.COMPILE_PLUS_RUNTIME, threadSafe = true)
+public class WatchMojo extends WebXmlMojo {
+
+    @Parameter(property = "watchDebounceMillis", defaultValue = "200")
+    private int watchDebounceMillis;
+
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        useWatchMode();
+        super.execute();
+        try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            for (File directory : watchedDirectories()) {
+                if (directory.isDirectory()) {
+                    register(watcher, directory.toPath());
+                    getLog().info("Watching " + directory);
+                }
+            }
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean changed = drain(watcher, key);
+                while ((key = watcher.poll(watchDebounceMillis, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= drain(watcher, key);
+                }
+                if (changed) {
+                    long start = System.nanoTime();
+                    resetClassPath();
+                    try {
+                        super.execute();
+                    } catch (MojoExecutionException | MojoFailureException e) {
+                        // a half compiled tree must not end the watch
+                        getLog().error(e.getMessage(), e);
+                    }
+                    getLog().info("Servlet mapping refreshed in " + (System.nanoTime() - start) / 1000000 + " ms");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not watch the class directories: " + e.getMessage(), e);
+        }
+    }
+
+    private void register(final WatchService watcher, Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+                directories.put(dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Consumes the key's events, registering new directories, and tells whether a class file or jar changed.
+     */
+    private boolean drain(WatchService watcher, WatchKey key) throws IOException {
+        Path dir = directories.get(key);
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                changed = true;
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            String name = path.getFileName().toString();
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                register(watcher, path);
+                changed = true;
+            } else if (name.endsWith(".class") || name.endsWith(".jar") || event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                changed = true;
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+        return changed;
+    }
+}
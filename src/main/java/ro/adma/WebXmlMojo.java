@@ -2,14 +2,21 @@ package ro.adma;
 
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
 import org.reflections.Reflections;
 import org.reflections.ReflectionsException;
 import org.reflections.scanners.Scanner;
@@ -23,16 +30,52 @@ import org.reflections.util.FilterBuilder;
 
 import javax.servlet.http.HttpServlet;
 import java.io.*;
+import java.lang.management.ManagementFactory;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
-@Mojo(name = "web_mapping", defaultPhase = LifecyclePhase.PACKAGE)
+@Mojo(name = "web_mapping", defaultPhase = LifecyclePhase.PACKAGE, requiresDependencyResolution = ResolutionScope.COMPILE_PLUS_RUNTIME,
+        threadSafe = true)
 public class WebXmlMojo extends AbstractMojo {
 
     @Parameter
     private String scanners;
 
+    private static final String ENGINE_CLASSFILE = "classfile";
+
+    private static final String SCAN_CLASSPATH_ARTIFACTS = "artifacts";
+
+    private static final String URL_MAP_PROPERTIES = "properties";
+
+    private static final String URL_MAP_ROUTER = "router";
+
+    private static final String URL_MAP_RESOURCE = "resource";
+
+    private static final String ROUTER_PROPERTY = "web-mapping.router";
+
+    private static final String START_MARK = "<!-- Generated servlet mapping -->";
+
+    private static final String END_MARK = "<!-- End Generated servlet mapping -->";
+
+    private static final String WEB_XML_INSERT_POINT = "</web-app>";
+
+    private static final String APPENGINE_WEB_XML_INSERT_POINT = "</system-properties>";
+
+    private static final String SYSTEM_PROP_INSERT_POINT = "</appengine-web-app>";
+
+    private static final String WEB_APP_TAG = "<web-app";
+
+    private static final String ABSOLUTE_ORDERING = "<absolute-ordering";
+
+    private static final String METADATA_COMPLETE_MARK = "<!-- metadata-complete set by web_mapping, was ";
+
     private static final String DEFAULT_INCLUDE_EXCLUDE = "-java\\..*, -javax\\..*, -sun\\..*, -com\\.sun\\..*, +javax\\.servlet\\.http\\..*";
 
     @Parameter(defaultValue = DEFAULT_INCLUDE_EXCLUDE)
@@ -56,18 +99,149 @@ public class WebXmlMojo extends AbstractMojo {
     @Parameter
     private HashSet excludeClasses;
 
+    @Parameter
+    private List<OutputTarget> targets;
+
     @Parameter
     private String serializer;
 
     @Parameter(defaultValue = "false")
     private Boolean parallel;
 
+    @Parameter
+    private Integer parallelism;
+
     @Parameter(defaultValue = "false")
     private boolean tests;
 
+    @Parameter(defaultValue = "reflections")
+    private String engine;
+
+    @Parameter(defaultValue = "webapp")
+    private String scanClasspath;
+
+    @Parameter(defaultValue = "compile,runtime")
+    private String scanScopes;
+
+    @Parameter
+    private String scanArtifacts;
+
+    @Parameter
+    private String excludeArtifacts;
+
+    @Parameter(defaultValue = "true")
+    private boolean pruneArtifacts;
+
+    @Parameter(defaultValue = "javax.servlet:servlet-api, javax.servlet:javax.servlet-api, *:web-framework*")
+    private String scanMarkers;
+
+    @Parameter(defaultValue = "false")
+    private boolean incremental;
+
+    @Parameter(defaultValue = "${project.build.directory}/web-mapping.idx")
+    private File indexFile;
+
+    @Parameter(defaultValue = "true")
+    private boolean prefilter;
+
+    @Parameter(defaultValue = "true")
+    private boolean embeddedIndexes;
+
+    @Parameter(defaultValue = "false")
+    private boolean jarCache;
+
+    // on unless set to false; only the classfile engine reads jar summaries it could share
+    @Parameter
+    private Boolean sharedCache;
+
+    @Parameter(defaultValue = "false")
+    private boolean streaming;
+
+    @Parameter(defaultValue = "true")
+    private boolean warmCache;
+
+    @Parameter(defaultValue = "100000")
+    private int warmCacheMaxClasses;
+
+    @Parameter(defaultValue = "false")
+    private boolean warmCacheVerifyHash;
+
+    @Parameter(defaultValue = "${user.home}/.m2/web-mapping-cache")
+    private File jarCacheDirectory;
+
+    @Parameter(defaultValue = "256")
+    private int jarCacheSizeMb;
+
+    @Parameter(defaultValue = URL_MAP_PROPERTIES)
+    private String urlMapMode;
+
+    @Parameter(defaultValue = "ro.adma.mapping.UrlRouter")
+    private String routerClass;
+
+    @Parameter(defaultValue = "ro.adma.mapping.UrlMap")
+    private String urlMapClass;
+
+    @Parameter(defaultValue = "false")
+    private boolean metadataComplete;
+
+    @Parameter
+    private String servletInitializerClass;
+
+    @Parameter
+    private String factoryClass;
+
+    @Parameter
+    private String warmupClasses;
+
+    @Parameter
+    private File classListFile;
+
+    @Parameter
+    private String classListFilter;
+
+    @Parameter(defaultValue = "${project.build.directory}/generated-sources/web-mapping")
+    private File generatedSourcesDirectory;
+
+    @Parameter
+    private String compilerRelease;
+
+    @Parameter
+    private String compilerTarget;
+
+    @Parameter
+    private File typeHierarchyFile;
+
+    @Parameter(defaultValue = "true")
+    private boolean metrics;
+
+    @Parameter(defaultValue = "${project.build.directory}/web-mapping-metrics.json")
+    private File metricsFile;
+
+    @Parameter(defaultValue = "10")
+    private int metricsTopJars;
+
+    @Parameter(defaultValue = "true")
+    private boolean skipUnchanged;
+
+    @Parameter(defaultValue = "${project.build.directory}/web-mapping.fingerprint")
+    private File fingerprintFile;
+
     @Parameter(property = "project", required = true, readonly = true)
     private MavenProject mavenProject;
 
+    @Parameter(defaultValue = "${session}", readonly = true)
+    private MavenSession mavenSession;
+
+    private Set<URL> scanUrls;
+
+    private boolean retainIndex;
+
+    private ScanMetrics scanMetrics;
+
+    private ClassIndex retainedIndex;
+
+    private List<OutputTarget> outputTargets;
+
     public WebXmlMojo() {
     }
 
@@ -89,6 +263,10 @@ public class WebXmlMojo extends AbstractMojo {
         if (StringUtils.isEmpty(destinations)) {
             destinations = resolveOutputWebXml();
         }
+        if (!Arrays.asList(URL_MAP_PROPERTIES, URL_MAP_ROUTER, URL_MAP_RESOURCE).contains(urlMapMode)) {
+            throw new MojoExecutionException("Unknown urlMapMode " + urlMapMode + ", expected " + URL_MAP_PROPERTIES
+                    + ", " + URL_MAP_ROUTER + " or " + URL_MAP_RESOURCE);
+        }
 
         String outputDirectory = resolveOutputDirectory();
         if (!new File(outputDirectory).exists()) {
@@ -96,6 +274,454 @@ public class WebXmlMojo extends AbstractMojo {
             return;
         }
 
+        outputTargets = resolveTargets();
+
+        if (Boolean.TRUE.equals(sharedCache) && !incremental && !ENGINE_CLASSFILE.equals(engine)) {
+            getLog().warn("sharedCache is ignored with the " + engine + " engine, it only applies to the "
+                    + ENGINE_CLASSFILE + " engine");
+        }
+
+        scanMetrics = new ScanMetrics();
+        scanMetrics.put("build", "project", mavenProject.getId());
+        scanMetrics.put("build", "engine", incremental || ENGINE_CLASSFILE.equals(engine) ? ENGINE_CLASSFILE : "reflections");
+        scanMetrics.put("build", "parallel", parallel != null && parallel);
+        ScanMetrics.Timer totalTimer = scanMetrics.start("total");
+        String inputsFingerprint = null;
+        if (skipUnchanged) {
+            ScanMetrics.Timer timer = scanMetrics.start("fingerprint");
+            inputsFingerprint = inputsFingerprint();
+            String fingerprint = outputFingerprint(inputsFingerprint);
+            timer.stop();
+            if (fingerprint.equals(Fingerprint.read(fingerprintFile))) {
+                getLog().info("Servlet mapping is up to date, skipping scan (" + fingerprintFile.getName() + ")");
+                scanMetrics.put("result", "upToDate", true);
+                totalTimer.stop();
+                writeMetrics();
+                return;
+            }
+        }
+
+        AnnotationStore annotationStore;
+        TypeHierarchy hierarchy;
+        if (incremental || ENGINE_CLASSFILE.equals(engine)) {
+            ScanResult scanResult = scanClassPath();
+            ScanMetrics.Timer timer = scanMetrics.start("hierarchy");
+            hierarchy = scanResult.getHierarchy();
+            timer.stop();
+            annotationStore = scanResult.getAnnotations();
+        } else {
+            annotationStore = new AnnotationStore();
+            ScanMetrics.Timer scanTimer = scanMetrics.start("scan");
+            Reflections reflections = scanReflections(annotationStore);
+            scanTimer.stop();
+            ScanMetrics.Timer timer = scanMetrics.start("hierarchy");
+            TypeHierarchy.Builder edges = new TypeHierarchy.Builder();
+            for (Map.Entry<String, String> edge : reflections.getStore().getOrCreate(SubTypesScanner.class.getSimpleName()).entries()) {
+                edges.add(edge.getKey(), edge.getValue());
+            }
+            hierarchy = edges.build();
+            timer.stop();
+            if (!StringUtils.isEmpty(scanners)) {
+                copyAnnotations(reflections.getStore().getOrCreate("AnnotationScanner"), annotationStore);
+            }
+        }
+        ScanMetrics.Timer hierarchyTimer = scanMetrics.start("hierarchy");
+        // queried here, the hierarchy's scratch arrays are not shared with the generating threads
+        Map<OutputTarget, Set<String>> resources = new HashMap<>();
+        for (OutputTarget target : outputTargets) {
+            List<String> extendedClasses = target.getExtendedClasses();
+            resources.put(target, hierarchy.getSubTypesOf(extendedClasses.toArray(new String[extendedClasses.size()])));
+        }
+        Set<String> resourcesHttp = hierarchy.getSubTypesOf(HttpServlet.class.getName());
+        hierarchyTimer.stop();
+        scanMetrics.put("scan", "types", hierarchy.size());
+        scanMetrics.put("scan", "edges", hierarchy.getEdgeCount());
+        getLog().info("Type hierarchy: " + hierarchy.size() + " types, " + hierarchy.getEdgeCount() + " edges");
+        if (typeHierarchyFile != null) {
+            try {
+                writeIfChanged(typeHierarchyFile, hierarchy.toBytes());
+            } catch (IOException e) {
+                throw new MojoExecutionException("Could not write the type hierarchy: " + e.getMessage(), e);
+            }
+        }
+        getLog().info("Annotation store: " + annotationStore.getClassCount() + " classes, " + annotationStore.getValueCount()
+                + " values, ~" + annotationStore.estimatedBytes() / 1024 + " KB; heap used after scan: "
+                + ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024) + " MB");
+
+        getLog().info("------------------------------------------------------------------------");
+        List<MappingGenerator> generated = generateAll(resources, resourcesHttp, annotationStore);
+        Set<String> mappedClasses = new TreeSet<>();
+        int urlPatternCounter = 0;
+        int extendedClassesSkipped = 0;
+        int securityConstraintCounter = 0;
+        for (int i = 0; i < generated.size(); i++) {
+            MappingGenerator target = generated.get(i);
+            mappedClasses.addAll(target.getMappedClasses());
+            urlPatternCounter += target.getUrlPatternCounter();
+            extendedClassesSkipped += target.getExtendedClassesSkipped();
+            securityConstraintCounter += target.getSecurityConstraintCounter();
+            if (generated.size() > 1) {
+                getLog().info("Target " + outputTargets.get(i).getId() + ": " + target.getMappedClasses().size() + " classes mapped, "
+                        + target.getUrlPatternCounter() + " servlet mappings");
+            }
+        }
+        if (classListFile != null) {
+            writeClassList(mappedClasses);
+        }
+        if (skipUnchanged) {
+            try {
+                Fingerprint.write(fingerprintFile, outputFingerprint(inputsFingerprint));
+            } catch (IOException e) {
+                throw new MojoExecutionException("Could not write " + fingerprintFile + ": " + e.getMessage(), e);
+            }
+        }
+        getLog().info("Number of servlet mapping generated: " + urlPatternCounter);
+        getLog().info("Number of servlet mapping skipped: " + extendedClassesSkipped);
+        getLog().info("Number of security constraints generated: " + securityConstraintCounter);
+        scanMetrics.put("result", "targets", outputTargets.size());
+        scanMetrics.put("result", "servletMappings", urlPatternCounter);
+        scanMetrics.put("result", "servletMappingsSkipped", extendedClassesSkipped);
+        scanMetrics.put("result", "securityConstraints", securityConstraintCounter);
+        scanMetrics.put("result", "mappedClasses", mappedClasses.size());
+        totalTimer.stop();
+        writeMetrics();
+        getLog().info("------------------------------------------------------------------------");
+        //System.out.println(firstPart + str.toString() + lastPart);
+        //"webapp/reflections.xml"
+        //JavaCodeSerializer javaCodeSerializer = new JavaCodeSerializer();
+        //javaCodeSerializer.save(reflections, destinations.trim() + "java/ro.adma.MyModelStore");
+        //reflections.save(destinations.trim()+"/reflections.xml");
+    }
+
+    /**
+     * Generates the targets' output from the one scan, on a thread each when there are several. The threads only
+     * read the annotation store and their own subtype sets.
+     */
+    private List<MappingGenerator> generateAll(final Map<OutputTarget, Set<String>> resources, final Set<String> resourcesHttp,
+                                               final AnnotationStore annotationStore) throws MojoExecutionException {
+        if (outputTargets.size() == 1) {
+            OutputTarget target = outputTargets.get(0);
+            return Collections.singletonList(generate(target, resources.get(target), resourcesHttp, annotationStore));
+        }
+        int threads = Math.min(outputTargets.size(),
+                parallelism != null && parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<MappingGenerator>> futures = new ArrayList<>();
+            for (final OutputTarget target : outputTargets) {
+                futures.add(executor.submit(new Callable<MappingGenerator>() {
+                    public MappingGenerator call() throws MojoExecutionException {
+                        return generate(target, resources.get(target), resourcesHttp, annotationStore);
+                    }
+                }));
+            }
+            List<MappingGenerator> generated = new ArrayList<>();
+            for (Future<MappingGenerator> future : futures) {
+                generated.add(future.get());
+            }
+            return generated;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while generating the targets", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MojoExecutionException) {
+                throw (MojoExecutionException) e.getCause();
+            }
+            throw new MojoExecutionException("Could not generate a target: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private MappingGenerator generate(OutputTarget target, Set<String> resources, Set<String> resourcesHttp,
+                                      AnnotationStore annotationStore) throws MojoExecutionException {
+        String fileNameWebXml = target.getWebXml();
+        String fileNameAppengineWebXml = target.getAppengineWebXml();
+        getLog().info("Number of classes that extend " + StringUtils.join(target.getExtendedClasses().iterator(), ", ") + ": "
+                + resources.size());
+
+        // held from reading the descriptors' offsets to their rewrite, against other modules or builds writing them
+        DescriptorWriter.Lock descriptorLock;
+        try {
+            descriptorLock = DescriptorWriter.lock(new File(fileNameWebXml), new File(fileNameAppengineWebXml));
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not lock descriptor: " + e.getMessage(), e);
+        }
+        try {
+            ScanMetrics.Timer generateTimer = scanMetrics.start("generate");
+            DescriptorWriter webXml;
+            DescriptorWriter appengineWebXml;
+            try {
+                webXml = DescriptorWriter.open(new File(fileNameWebXml), START_MARK, END_MARK, WEB_XML_INSERT_POINT, WEB_APP_TAG, ABSOLUTE_ORDERING,
+                        METADATA_COMPLETE_MARK);
+                appengineWebXml = DescriptorWriter.open(new File(fileNameAppengineWebXml), START_MARK, END_MARK,
+                        APPENGINE_WEB_XML_INSERT_POINT, SYSTEM_PROP_INSERT_POINT);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Could not read descriptor: " + e.getMessage(), e);
+            }
+            // keep each descriptor's own line endings
+            final String ls = webXml.getLineSeparator();
+            final String appengineLs = appengineWebXml.getLineSeparator();
+
+            DescriptorWriter.Edit webAppEdit = null;
+            StringBuilder strWebXml = new StringBuilder();
+            strWebXml.append(ls);
+            String previousMetadataComplete = previousMetadataComplete(webXml);
+            boolean initializes = !StringUtils.isEmpty(servletInitializerClass);
+            if (metadataComplete || previousMetadataComplete != null || initializes) {
+                long start = requireMarker(webXml, WEB_APP_TAG);
+                String tag;
+                long end;
+                try {
+                    end = webXml.tagEnd(start);
+                    if (end == -1) {
+                        throw new IOException(fileNameWebXml + " has no complete " + WEB_APP_TAG + " tag");
+                    }
+                    tag = webXml.read(start, end);
+                } catch (IOException e) {
+                    throw new MojoExecutionException("Could not read descriptor: " + e.getMessage(), e);
+                }
+                if (initializes && servletMajorVersion(tag) < 3) {
+                    // the container would not look for the initializer, and web.xml would have no servlets either
+                    throw new MojoExecutionException(fileNameWebXml + " is not a Servlet 3.0 descriptor, servletInitializerClass "
+                            + servletInitializerClass + " would not be run");
+                }
+                if (metadataComplete) {
+                    String current = metadataCompleteValue(tag);
+                    String previous = previousMetadataComplete != null ? previousMetadataComplete : current != null ? current : "";
+                    if (!"true".equals(previous)) {
+                        // recorded in the block, so the attribute goes away with the option
+                        strWebXml.append("    ").append(METADATA_COMPLETE_MARK).append('"').append(previous).append("\" -->")
+                                .append(ls);
+                    }
+                    webAppEdit = new DescriptorWriter.Edit(start, end, metadataCompleteTag(tag, "true"));
+                    long ordering = webXml.indexOf(ABSOLUTE_ORDERING);
+                    boolean orderingInBlock = webXml.contains(START_MARK) && ordering > webXml.indexOf(START_MARK)
+                            && ordering < webXml.indexOf(END_MARK);
+                    if (servletMajorVersion(tag) < 3) {
+                        getLog().info("web.xml is not a Servlet 3.0 descriptor, <absolute-ordering/> is not added");
+                    } else if (ordering == -1 || orderingInBlock) {
+                        strWebXml.append("    <absolute-ordering/>").append(ls);
+                    }
+                } else if (previousMetadataComplete != null) {
+                    // put back what the tag had before the goal set it
+                    webAppEdit = new DescriptorWriter.Edit(start, end, metadataCompleteTag(tag,
+                            previousMetadataComplete.isEmpty() ? null : previousMetadataComplete));
+                }
+            }
+            ServletInitializerSource initializer = initializes ? new ServletInitializerSource() : null;
+            FactorySource factory = StringUtils.isEmpty(factoryClass) ? null : new FactorySource();
+            MappingGenerator generator = new MappingGenerator(getLog(), target, annotationStore, URL_MAP_PROPERTIES.equals(urlMapMode));
+            generator.setInitializer(initializer);
+            generator.setFactory(factory);
+            StringBuilder strAppengineWebXml = new StringBuilder();
+            strAppengineWebXml.append(appengineLs);
+
+            generator.addControllers(resources, appengineLs, strAppengineWebXml);
+            if (URL_MAP_ROUTER.equals(urlMapMode)) {
+                generateRouter(target, generator.getUrlMap());
+                MappingGenerator.addProperty(appengineLs, strAppengineWebXml, ROUTER_PROPERTY, routerClass);
+            } else if (URL_MAP_RESOURCE.equals(urlMapMode)) {
+                generateUrlMapResource(target, generator.getUrlMap());
+            }
+            generator.addServlets(resourcesHttp, ls, strWebXml);
+            generator.countSecurityConstraints(resources);
+            if (initializer != null) {
+                generateServletInitializer(target, initializer);
+            }
+            if (factory != null) {
+                generateFactory(target, factory);
+            }
+            generateTimer.stop();
+            ScanMetrics.Timer writeTimer = scanMetrics.start("write");
+            try {
+                boolean written;
+                List<DescriptorWriter.Edit> webXmlEdits = new ArrayList<>();
+                if (webAppEdit != null) {
+                    webXmlEdits.add(webAppEdit);
+                }
+                if (!webXml.contains(START_MARK)) {
+                    long insertAt = requireMarker(webXml, WEB_XML_INSERT_POINT);
+                    webXmlEdits.add(new DescriptorWriter.Edit(insertAt, insertAt, ls + "    " + START_MARK, strWebXml, "    " + END_MARK + ls));
+                } else {
+                    webXmlEdits.add(new DescriptorWriter.Edit(webXml.indexOf(START_MARK) + START_MARK.length(), requireMarker(webXml, END_MARK),
+                            strWebXml, "    "));
+                }
+                written = webXml.write(webXmlEdits);
+                getLog().info(fileNameWebXml + (written ? " updated" : " unchanged"));
+                if (!appengineWebXml.contains(APPENGINE_WEB_XML_INSERT_POINT)) {
+                    long insertAt = requireMarker(appengineWebXml, SYSTEM_PROP_INSERT_POINT);
+                    written = appengineWebXml.write(insertAt,
+                            appengineLs + "    <system-properties>" + appengineLs + "        " + START_MARK,
+                            strAppengineWebXml,
+                            "        " + END_MARK + appengineLs + "    " + APPENGINE_WEB_XML_INSERT_POINT + appengineLs,
+                            insertAt);
+                } else if (!appengineWebXml.contains(START_MARK)) {
+                    long insertAt = requireMarker(appengineWebXml, APPENGINE_WEB_XML_INSERT_POINT);
+                    written = appengineWebXml.write(insertAt, appengineLs + "        " + START_MARK, strAppengineWebXml,
+                            "        " + END_MARK + appengineLs + "    ", insertAt);
+                } else {
+                    written = appengineWebXml.write(appengineWebXml.indexOf(START_MARK) + START_MARK.length(), "", strAppengineWebXml,
+                            "        ", requireMarker(appengineWebXml, END_MARK));
+                }
+                getLog().info(fileNameAppengineWebXml + (written ? " updated" : " unchanged"));
+            } catch (IOException e) {
+                throw new MojoExecutionException("Could not write descriptor: " + e.getMessage(), e);
+            }
+            writeTimer.stop();
+            return generator;
+        } finally {
+            descriptorLock.close();
+        }
+    }
+
+    /**
+     * The configured targets with the goal's parameters filled in, or one target made of the parameters alone.
+     */
+    private List<OutputTarget> resolveTargets() throws MojoExecutionException {
+        Set<String> excluded = new HashSet<>();
+        if (excludeClasses != null) {
+            for (Object className : excludeClasses) {
+                excluded.add(String.valueOf(className));
+            }
+        }
+        List<OutputTarget> resolved = new ArrayList<>();
+        try {
+            if (targets == null || targets.isEmpty()) {
+                resolved.add(new OutputTarget("default", destinations, split(extendedClass), annotationClass, requiredType,
+                        adminType, excluded));
+                return resolved;
+            }
+            Set<String> ids = new HashSet<>();
+            Map<String, String> webXmls = new HashMap<>();
+            for (int i = 0; i < targets.size(); i++) {
+                OutputTarget target = targets.get(i);
+                String id = StringUtils.isEmpty(target.getId()) ? "target" + (i + 1) : target.getId();
+                OutputTarget resolvedTarget = new OutputTarget(id,
+                        StringUtils.isEmpty(target.getDestinations()) ? destinations : target.getDestinations(),
+                        split(StringUtils.isEmpty(target.getExtendedClass()) ? extendedClass : target.getExtendedClass()),
+                        StringUtils.isEmpty(target.getAnnotationClass()) ? annotationClass : target.getAnnotationClass(),
+                        StringUtils.isEmpty(target.getRequiredType()) ? requiredType : target.getRequiredType(),
+                        StringUtils.isEmpty(target.getAdminType()) ? adminType : target.getAdminType(),
+                        StringUtils.isEmpty(target.getExcludeClasses()) ? excluded : new HashSet<>(split(target.getExcludeClasses())));
+                if (!ids.add(id)) {
+                    throw new MojoExecutionException("More than one target has the id " + id);
+                }
+                // two targets rewriting the same descriptors would undo each other's block
+                String other = webXmls.put(new File(resolvedTarget.getWebXml()).getAbsolutePath(), id);
+                if (other != null) {
+                    throw new MojoExecutionException("Targets " + other + " and " + id + " both write " + resolvedTarget.getWebXml());
+                }
+                resolved.add(resolvedTarget);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException("Invalid excludeClasses: " + e.getMessage(), e);
+        }
+        return resolved;
+    }
+
+    /**
+     * The annotation types any target reads, which the scan keeps.
+     */
+    private List<String> annotationTypes() {
+        Set<String> types = new LinkedHashSet<>();
+        for (OutputTarget target : outputTargets) {
+            types.add(target.getAnnotationClass());
+            types.add(target.getRequiredType());
+        }
+        return new ArrayList<>(types);
+    }
+
+    /**
+     * Fingerprint of the configuration and of every file the scan could read. In artifacts mode all resolved
+     * artifacts are included, before the scope and pruning filters.
+     */
+    private String inputsFingerprint() throws MojoExecutionException {
+        Fingerprint fingerprint = new Fingerprint();
+        for (String value : Arrays.asList(extendedClass, annotationClass, requiredType, adminType, includeExclude,
+                scanners, serializer, engine, scanClasspath, scanScopes, scanArtifacts, excludeArtifacts, scanMarkers,
+                urlMapMode, routerClass, urlMapClass, servletInitializerClass, factoryClass, warmupClasses,
+                classListFile != null ? classListFile.getPath() : null, classListFilter,
+                String.valueOf(metadataComplete), String.valueOf(pruneArtifacts), String.valueOf(prefilter),
+                String.valueOf(embeddedIndexes), generatedSourcesDirectory != null ? generatedSourcesDirectory.getPath() : null)) {
+            fingerprint.add(value);
+        }
+        if (generatesClasses()) {
+            // a new Java level has to recompile the generated classes even when nothing else changed
+            fingerprint.add(levelOptions().toString());
+        }
+        if (excludeClasses != null) {
+            List<String> excluded = new ArrayList<>();
+            for (Object className : excludeClasses) {
+                excluded.add(String.valueOf(className));
+            }
+            Collections.sort(excluded);
+            fingerprint.add(excluded.toString());
+        }
+        for (OutputTarget target : outputTargets) {
+            for (String value : target.describe()) {
+                fingerprint.add(value);
+            }
+        }
+        Set<File> files = new TreeSet<>();
+        Set<String> otherUrls = new TreeSet<>();
+        if (SCAN_CLASSPATH_ARTIFACTS.equals(scanClasspath)) {
+            for (Artifact artifact : mavenProject.getArtifacts()) {
+                if (artifact.getFile() != null) {
+                    files.add(artifact.getFile());
+                }
+            }
+            files.add(new File(resolveClassDirectory()));
+        } else {
+            for (URL url : parseUrls()) {
+                File file = ClassPathScanner.toFile(url);
+                if (file != null) {
+                    files.add(file);
+                } else {
+                    // not scanned, but a different class path is a different input
+                    otherUrls.add(url.toString());
+                }
+            }
+        }
+        for (String url : otherUrls) {
+            fingerprint.add(url);
+        }
+        for (File file : files) {
+            fingerprint.addFile(file);
+        }
+        return fingerprint.toHex();
+    }
+
+    private String outputFingerprint(String inputsFingerprint) throws MojoExecutionException {
+        try {
+            Fingerprint fingerprint = new Fingerprint().add(inputsFingerprint);
+            for (OutputTarget target : outputTargets) {
+                fingerprint.addBlock(new File(target.getWebXml()), START_MARK, END_MARK)
+                        .addBlock(new File(target.getAppengineWebXml()), START_MARK, END_MARK);
+                for (File file : generatedFiles(target)) {
+                    fingerprint.addFile(file);
+                }
+            }
+            if (classListFile != null) {
+                fingerprint.addFile(classListFile);
+            }
+            if (typeHierarchyFile != null) {
+                fingerprint.addFile(typeHierarchyFile);
+            }
+            return fingerprint.toHex();
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not read descriptor: " + e.getMessage(), e);
+        }
+    }
+
+    private static void copyAnnotations(Multimap<String, String> multimap, AnnotationStore annotationStore) {
+        for (Map.Entry<String, String> entry : multimap.entries()) {
+            int separator = entry.getKey().indexOf('|');
+            annotationStore.put(entry.getKey().substring(0, separator), entry.getKey().substring(separator + 1), entry.getValue());
+        }
+    }
+
+    private Reflections scanReflections(AnnotationStore annotationStore) throws MojoExecutionException {
         ConfigurationBuilder config = new ConfigurationBuilder();
 
         config.setUrls(parseUrls());
@@ -104,7 +730,7 @@ public class WebXmlMojo extends AbstractMojo {
             config.filterInputsBy(FilterBuilder.parse(includeExclude));
         }
 
-        config.setScanners(!StringUtils.isEmpty(scanners) ? parseScanners() : new Scanner[]{new SubTypesScanner(), new AnnotationScanner()});
+        config.setScanners(!StringUtils.isEmpty(scanners) ? parseScanners() : new Scanner[]{new SubTypesScanner(), new AnnotationScanner(annotationStore)});
 
         if (!StringUtils.isEmpty(serializer)) {
             try {
@@ -123,181 +749,408 @@ public class WebXmlMojo extends AbstractMojo {
             }
         }
 
+        // Reflections.log is global: install the adapter once and route each module's threads to its own log
+        ExecutorService executor = null;
         if (parallel != null && parallel.equals(Boolean.TRUE)) {
-            config.useParallelExecutor();
+            executor = MavenLogAdapter.routingExecutor(Runtime.getRuntime().availableProcessors(), getLog());
+            config.setExecutorService(executor);
         }
 
-        //
-        if (Reflections.log == null) {
+        boolean routed = false;
+        synchronized (Reflections.class) {
             try {
-                Reflections.log = new MavenLogAdapter(getLog());
+                if (Reflections.log == null) {
+                    Reflections.log = new MavenLogAdapter(getLog());
+                }
+                if (Reflections.log instanceof MavenLogAdapter) {
+                    MavenLogAdapter.setCurrent(getLog());
+                    routed = true;
+                }
             } catch (Error e) {
                 //ignore
             }
         }
-        Reflections reflections = new Reflections(config);
-        final String startMark = "<!-- Generated servlet mapping -->";
-        final String endMark = "<!-- End Generated servlet mapping -->";
-        final String webXmlInsertPoint = "</web-app>";
-        final String appengineWebXmlInsertPoint = "</system-properties>";
-        final String systemPropInsertPoint = "</appengine-web-app>";
-
-        final String ls = System.getProperty("line.separator");
-        Set<String> resources = reflections.getStore().getSubTypesOf(extendedClass);
-        Set<String> resourcesHttp = reflections.getStore().getSubTypesOf(HttpServlet.class.getName());
-        Multimap<String, String> annotationScanner = reflections.getStore().getOrCreate("AnnotationScanner");
-
-
-        getLog().info("------------------------------------------------------------------------");
-        getLog().info("Number of classes that extend " + extendedClass + ": " + resources.size());
+        try {
+            return new Reflections(config);
+        } finally {
+            if (routed) {
+                MavenLogAdapter.setCurrent(null);
+            }
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+    }
 
-        String fileNameWebXml = destinations + "WEB-INF/web.xml";
-        String fileNameAppengineWebXml = destinations + "WEB-INF/appengine-web.xml";
-        String contentWebXml = "";
+    private ScanResult scanClassPath() throws MojoExecutionException {
+        List<String> annotationTypes = annotationTypes();
+        String filterKey = (StringUtils.isEmpty(includeExclude) ? "" : includeExclude)
+                + (prefilter ? "|" + StringUtils.join(annotationTypes.iterator(), "|") : "");
         try {
-            contentWebXml = readFile(fileNameWebXml);
+            ClassIndex index;
+            if (retainedIndex != null && retainedIndex.getKey().equals(filterKey)) {
+                index = retainedIndex;
+            } else {
+                index = incremental ? ClassIndex.load(indexFile, filterKey) : new ClassIndex(filterKey);
+            }
+            if (retainIndex) {
+                retainedIndex = index;
+            }
+            ClassPathScanner scanner = new ClassPathScanner(compileFilter("includeExclude", includeExclude), index);
+            if (ENGINE_CLASSFILE.equals(engine)) {
+                scanner.useClassFileReader();
+            }
+            if (parallel != null && parallel.equals(Boolean.TRUE)) {
+                scanner.setParallelism(parallelism != null && parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+            }
+            if (embeddedIndexes) {
+                scanner.useEmbeddedIndexes();
+            }
+            if (prefilter) {
+                scanner.setPrefilter(annotationTypes);
+            }
+            if (streaming) {
+                // the in-memory caches would keep every summary alive, which streaming is meant to avoid
+                scanner.useStreaming(annotationTypes);
+            }
+            JarCache cache = null;
+            if (jarCache) {
+                cache = new JarCache(jarCacheDirectory, jarCacheSizeMb * 1024L * 1024L);
+                scanner.setJarCache(cache);
+            }
+            WarmSummaryCache warm = null;
+            int warmHits = 0;
+            int warmMisses = 0;
+            if (warmCache && !streaming) {
+                warm = WarmSummaryCache.get();
+                warm.configure(warmCacheMaxClasses, warmCacheVerifyHash);
+                warmHits = warm.getHits();
+                warmMisses = warm.getMisses();
+                scanner.setWarmCache(warm);
+            }
+            SharedSummaryCache shared = null;
+            if (!Boolean.FALSE.equals(sharedCache) && !streaming && mavenSession != null && mavenSession.getRepositorySession() != null) {
+                shared = SharedSummaryCache.forSession(mavenSession.getRepositorySession().getData());
+                scanner.setSharedCache(shared);
+            }
+            ScanMetrics.Timer timer = scanMetrics.start("urls");
+            Set<URL> urls = parseUrls();
+            timer.stop();
+            timer = scanMetrics.start("scan");
+            ScanResult scanResult = scanner.scan(urls);
+            timer.stop();
+            scanMetrics.put("scan", "urls", urls.size());
+            scanMetrics.put("scan", "classes", scanResult.getClassCount());
+            scanMetrics.put("scan", "classesParsed", scanner.getParsed());
+            scanMetrics.put("scan", "classesReused", scanner.getReused());
+            scanMetrics.put("scan", "classesIndexed", scanner.getIndexed());
+            scanMetrics.put("scan", "prefilterRejected", scanner.getRejected());
+            scanMetrics.put("scan", "workerCpuMillis", scanner.getWorkerCpuNanos() / 1000000);
+            scanMetrics.addJars(scanner.getJarStats());
+            if (SCAN_CLASSPATH_ARTIFACTS.equals(scanClasspath)) {
+                scanResult.addServletApiStubs();
+            }
+            if (incremental) {
+                getLog().info("Incremental scan: " + scanner.getParsed() + " classes parsed, " + scanner.getReused()
+                        + " reused, " + scanner.getRemoved() + " removed from " + indexFile.getName());
+            } else {
+                getLog().info("Class file scan: " + scanner.getParsed() + " classes parsed, " + scanner.getReused() + " reused");
+            }
+            if (scanner.getIndexed() > 0) {
+                getLog().info("Embedded " + EmbeddedIndex.PATH + " indexes: " + scanner.getIndexed() + " classes read without scanning");
+            }
+            if (prefilter) {
+                getLog().info("Pre-filter rejected " + scanner.getRejected() + " classes, only their supertypes were read");
+            }
+            if (cache != null) {
+                scanMetrics.put("caches", "jarCacheHits", cache.getHits());
+                scanMetrics.put("caches", "jarCacheMisses", cache.getMisses());
+                getLog().info("Jar cache " + jarCacheDirectory + ": " + cache.getHits() + " hits, " + cache.getMisses() + " misses");
+            }
+            if (warm != null) {
+                scanMetrics.put("caches", "warmCacheHits", warm.getHits() - warmHits);
+                scanMetrics.put("caches", "warmCacheMisses", warm.getMisses() - warmMisses);
+                getLog().info("JVM warm cache: " + (warm.getHits() - warmHits) + " hits, " + (warm.getMisses() - warmMisses)
+                        + " misses; " + warm.getJarCount() + " jars, " + warm.getClassCount() + " classes held, "
+                        + warm.getEvictions() + " evicted since the JVM started");
+            }
+            if (shared != null) {
+                scanMetrics.put("caches", "sharedCacheHits", shared.getHits());
+                scanMetrics.put("caches", "sharedCacheMisses", shared.getMisses());
+                getLog().info("Shared build cache: " + shared.getHits() + " jars read by other modules, " + shared.getMisses() + " read here");
+            }
+            if (incremental && index.isModified()) {
+                index.save(indexFile);
+            }
+            return scanResult;
         } catch (IOException e) {
-            e.printStackTrace();
-        }
-        String firstPartWebXml;
-        String lastPartWebXml;
-        if (!contentWebXml.contains(startMark)) {
-            firstPartWebXml = contentWebXml.substring(0, contentWebXml.indexOf(webXmlInsertPoint)) + ls + "    " + startMark;
-            lastPartWebXml = endMark + ls + contentWebXml.substring(contentWebXml.indexOf(webXmlInsertPoint));
-        } else {
-            firstPartWebXml = contentWebXml.substring(0, contentWebXml.indexOf(startMark) + startMark.length());
-            lastPartWebXml = contentWebXml.substring(contentWebXml.indexOf(endMark));
+            throw new MojoExecutionException("Class path scan failed: " + e.getMessage(), e);
         }
+    }
 
-        String contentAppengineWebXml = "";
+    private void generateRouter(OutputTarget target, Map<String, String> urlMap) throws MojoExecutionException {
+        UrlTrie trie = new UrlTrie();
+        for (Map.Entry<String, String> entry : urlMap.entrySet()) {
+            trie.add(entry.getKey(), entry.getValue());
+        }
+        SourceCompiler compiler = newSourceCompiler(target);
         try {
-            contentAppengineWebXml = readFile(fileNameAppengineWebXml);
+            compiler.add(routerClass, trie.toJavaSource(routerClass));
+            compiler.compile();
         } catch (IOException e) {
-            e.printStackTrace();
-        }
-        String firstPartAppengineWebXml;
-        String lastPartAppengineWebXml;
-        if(!contentAppengineWebXml.contains(appengineWebXmlInsertPoint)){
-            firstPartAppengineWebXml =
-                    contentAppengineWebXml.substring(0, contentAppengineWebXml.indexOf(systemPropInsertPoint))
-                    + ls + "    " + "<system-properties>"
-                    + ls + "        " + startMark;
-            lastPartAppengineWebXml =
-                    endMark + ls + "    " + appengineWebXmlInsertPoint +
-                    ls +contentAppengineWebXml.substring(contentAppengineWebXml.indexOf(systemPropInsertPoint));
-        } else if (!contentAppengineWebXml.contains(startMark)) {
-            firstPartAppengineWebXml = contentAppengineWebXml.substring(0, contentAppengineWebXml.indexOf(appengineWebXmlInsertPoint)) + ls + "        " + startMark;
-            lastPartAppengineWebXml = endMark + ls + "    " + contentAppengineWebXml.substring(contentAppengineWebXml.indexOf(appengineWebXmlInsertPoint));
-        } else {
-            firstPartAppengineWebXml = contentAppengineWebXml.substring(0, contentAppengineWebXml.indexOf(startMark) + startMark.length());
-            lastPartAppengineWebXml = contentAppengineWebXml.substring(contentAppengineWebXml.indexOf(endMark));
+            throw new MojoExecutionException("Could not generate " + routerClass + ": " + e.getMessage(), e);
         }
+        getLog().info("Url router " + routerClass + ": " + trie.getRouteCount() + " routes");
+    }
 
-        StringBuilder strWebXml = new StringBuilder();
-        strWebXml.append(ls);
-        StringBuilder strAppengineWebXml = new StringBuilder();
-        strAppengineWebXml.append(ls);
-        int urlPatternCounter = 0;
-        int extendedClassesSkipped = 0;
-        int securityConstraintCounter = 0;
+    private void generateUrlMapResource(OutputTarget target, SortedMap<String, String> urlMap) throws MojoExecutionException {
+        File file = new File(target.getWebappClassDirectory(), UrlMapResource.RESOURCE);
+        SourceCompiler compiler = newSourceCompiler(target);
+        try {
+            boolean written = UrlMapResource.write(file, urlMap);
+            compiler.add(urlMapClass, UrlMapResource.toJavaSource(urlMapClass));
+            compiler.compile();
+            getLog().info("Url map " + file + ": " + urlMap.size() + " patterns, " + file.length() + " bytes"
+                    + (written ? "" : ", unchanged") + "; accessor " + urlMapClass);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not generate the url map: " + e.getMessage(), e);
+        }
+    }
 
-        List<String> res = new ArrayList<>(resources);
-        Collections.sort(res);
-        List<String> resHttp = new ArrayList<>(resourcesHttp);
-        Collections.sort(resHttp);
-        for (String className : res) {
-            if (this.excludeClasses != null && this.excludeClasses.contains(className)) {
-                continue;
-            }
-            HashSet<String> urlPatterns = new HashSet<>(annotationScanner.get(className + "|" + annotationClass));
-            if (urlPatterns.size() == 0 && !className.contains("controller")) {
-                //getLog().info("Servlet mapping skipped: " + className);
-                //extendedClassesSkipped++;
-                continue;
-            }
-            if (urlPatterns.size() == 0) {
-                String urlPattern = className.replaceAll("[.]", "/");
-                urlPattern = "/do/" + urlPattern.substring(urlPattern.indexOf("controller/") + "controller/".length());
-                urlPatterns.add(urlPattern);
+    private void generateServletInitializer(OutputTarget target, ServletInitializerSource initializer) throws MojoExecutionException {
+        List<String> classpath = compileClasspath();
+        SourceCompiler compiler = newSourceCompiler(target);
+        compiler.setClasspath(classpath);
+        try (URLClassLoader loader = projectClassLoader(classpath)) {
+            for (String className : initializer.retainInstantiable(loader)) {
+                getLog().warn("Servlet initializer skips " + className + ", it is not a public class with a public no-arg constructor");
             }
+            compiler.add(servletInitializerClass, initializer.toJavaSource(servletInitializerClass));
+            compiler.compile();
+            File service = new File(target.getWebappClassDirectory(), ServletInitializerSource.SERVICE);
+            writeIfChanged(service, (servletInitializerClass + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not generate " + servletInitializerClass
+                    + " (it needs the Servlet 3.0 API on the compile classpath): " + e.getMessage(), e);
+        }
+        getLog().info("Servlet initializer " + servletInitializerClass + ": " + initializer.size() + " servlets");
+    }
 
-            if (urlPatterns.size() > 0) {
-                addSystemProperty(ls, strAppengineWebXml, className, urlPatterns.toArray(new String[urlPatterns.size()]));
-                //urlPatternCounter += urlPatterns.size();
+    /**
+     * Writes the mapped classes and the project and library classes they reference, one internal name per line, for
+     * -XX:SharedClassListFile or a warmup preloader.
+     */
+    private void writeClassList(Set<String> mappedClasses) throws MojoExecutionException {
+        try (ClassClosure closure = new ClassClosure(parseUrls())) {
+            List<String> classes = closure.resolve(mappedClasses, compileFilter("classListFilter", classListFilter));
+            StringBuilder content = new StringBuilder();
+            for (String className : classes) {
+                content.append(className.replace('.', '/')).append('\n');
             }
+            boolean written = writeIfChanged(classListFile, content.toString().getBytes(StandardCharsets.UTF_8));
+            getLog().info("Class list " + classListFile + ": " + classes.size() + " classes from " + mappedClasses.size()
+                    + " mapped" + (written ? "" : ", unchanged"));
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not write the class list: " + e.getMessage(), e);
         }
-        for (String className : resHttp) {
-            if (this.excludeClasses != null && this.excludeClasses.contains(className)) {
-                continue;
-            }
-            String servletName = className.replaceAll("[.]", "_");
-            LinkedHashSet<String> urlPatterns = new LinkedHashSet<>(annotationScanner.get(className + "|" + annotationClass));
+    }
 
-            if (urlPatterns.size() == 0 && !className.contains("controller")) {
-                getLog().info("Servlet mapping skipped: " + className);
-                extendedClassesSkipped++;
-                continue;
-            }
-            if (urlPatterns.size() == 0) {
-                String urlPattern = className.replaceAll("[.]", "/");
-                urlPattern = "/do/" + urlPattern.substring(urlPattern.indexOf("controller/") + "controller/".length());
-                urlPatterns.add(urlPattern);
+    private void writeMetrics() {
+        if (!metrics) {
+            return;
+        }
+        try {
+            scanMetrics.write(metricsFile);
+        } catch (IOException e) {
+            getLog().warn("Could not write " + metricsFile + ": " + e.getMessage());
+        }
+        List<ScanMetrics.JarStats> slowest = scanMetrics.slowestJars(metricsTopJars);
+        if (!slowest.isEmpty()) {
+            getLog().info("Slowest jars (" + metricsFile.getName() + " has all of them):");
+            for (ScanMetrics.JarStats jar : slowest) {
+                getLog().info(String.format(Locale.ROOT, "  %9.1f ms %7d classes  %-8s %s", jar.getWallNanos() / 1e6,
+                        jar.getEntries(), jar.getSource(), new File(jar.getPath()).getName()));
             }
+        }
+    }
 
-            if (urlPatterns.size() > 0) {
-                addServletMapping(ls, strWebXml, className, servletName, urlPatterns.toArray(new String[urlPatterns.size()]));
-                urlPatternCounter += urlPatterns.size();
-            }
+    private static boolean writeIfChanged(File file, byte[] content) throws IOException {
+        if (file.isFile() && file.length() == content.length && Arrays.equals(Files.readAllBytes(file.toPath()), content)) {
+            return false;
         }
-        for (String className : res) {
-            String servletName = className.replaceAll("[.]", "_");
-            Collection<String> urlPatterns = annotationScanner.get(className + "|" + annotationClass);
-            if (urlPatterns.size() == 0 && !className.contains("controller")) {
-                continue;
-            }
-            if (urlPatterns.size() == 0) {
-                String urlPattern = className.replaceAll("[.]", "/");
-                urlPattern = "/do/" + urlPattern.substring(urlPattern.indexOf("controller/") + "controller/".length());
-                urlPatterns.add(urlPattern);
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create directory " + parent);
+        }
+        Files.write(file.toPath(), content);
+        return true;
+    }
+
+    private void generateFactory(OutputTarget target, FactorySource factory) throws MojoExecutionException {
+        List<String> classpath = compileClasspath();
+        SourceCompiler compiler = newSourceCompiler(target);
+        compiler.setClasspath(classpath);
+        try (URLClassLoader loader = projectClassLoader(classpath)) {
+            for (String className : factory.retainInstantiable(loader)) {
+                getLog().info("Factory skips " + className + ", it is not a public class with a public no-arg constructor");
             }
-            Collection<String> requiredTypeC = annotationScanner.get(className + "|" + requiredType);
-            if (requiredTypeC.size() == 1) {
-                if (requiredTypeC.iterator().next().equals("SuperAdministrator")) {
-                    //create security constraint with admin
-                    //addSecurityMapping(ls, strWebXml, servletName, urlPatterns.toArray(new String[urlPatterns.size()]));
-                    securityConstraintCounter += urlPatterns.size();
-                }
+            compiler.add(factoryClass, factory.toJavaSource(factoryClass, split(warmupClasses)));
+            compiler.compile();
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not generate " + factoryClass + ": " + e.getMessage(), e);
+        }
+        getLog().info("Factory " + factoryClass + ": " + factory.size() + " classes");
+    }
+
+    /**
+     * The project's classes without the plugin's own dependencies, for reading classes without initializing them.
+     */
+    private static URLClassLoader projectClassLoader(List<String> classpath) throws MojoExecutionException {
+        List<URL> urls = new ArrayList<>();
+        try {
+            for (String element : classpath) {
+                urls.add(new File(element).toURI().toURL());
             }
-            //addServletMapping(ls, str, className, servletName, urlPattern);
-            //urlPatternCounter++;
+        } catch (MalformedURLException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
         }
+        return new URLClassLoader(urls.toArray(new URL[urls.size()]), ClassLoader.getSystemClassLoader().getParent());
+    }
+
+    private List<String> compileClasspath() throws MojoExecutionException {
         try {
-            writeFile(fileNameWebXml, firstPartWebXml + strWebXml.toString() + "    " + lastPartWebXml);
-            writeFile(fileNameAppengineWebXml, firstPartAppengineWebXml + strAppengineWebXml.toString() + "        " + lastPartAppengineWebXml);
-        } catch (FileNotFoundException | UnsupportedEncodingException e) {
-            e.printStackTrace();
+            return mavenProject.getCompileClasspathElements();
+        } catch (DependencyResolutionRequiredException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
         }
-        getLog().info("Number of servlet mapping generated: " + urlPatternCounter);
-        getLog().info("Number of servlet mapping skipped: " + extendedClassesSkipped);
-        getLog().info("Number of security constraints generated: " + securityConstraintCounter);
-        getLog().info("------------------------------------------------------------------------");
-        //System.out.println(firstPart + str.toString() + lastPart);
-        //"webapp/reflections.xml"
-        //JavaCodeSerializer javaCodeSerializer = new JavaCodeSerializer();
-        //javaCodeSerializer.save(reflections, destinations.trim() + "java/ro.adma.MyModelStore");
-        //reflections.save(destinations.trim()+"/reflections.xml");
     }
 
-    private void addSystemProperty(String ls, StringBuilder str, String className, String... urlPatterns) {
-        //example: <property name="url:/enrol/{clientName}/{clientHash}" value="true"/>
-        for (String urlPattern : urlPatterns) {
-            str.append("        <property name=\"url:");
-            str.append(urlPattern);
-            str.append("\" value=\"");
-            str.append(className);
-            str.append("\"/>");
-            str.append(ls);
+    /**
+     * The web-app start tag with its metadata-complete attribute set to the value, or removed for null.
+     */
+    private static String metadataCompleteTag(String tag, String value) {
+        Matcher matcher = Pattern.compile("(\\s*)metadata-complete\\s*=\\s*([\"'])[^\"']*\\2").matcher(tag);
+        if (matcher.find()) {
+            return matcher.replaceFirst(value == null ? "" : "$1" + Matcher.quoteReplacement("metadata-complete=\"" + value + "\""));
+        }
+        if (value == null) {
+            return tag;
+        }
+        int close = tag.endsWith("/>") ? tag.length() - 2 : tag.length() - 1;
+        return tag.substring(0, close) + " metadata-complete=\"" + value + "\"" + tag.substring(close);
+    }
+
+    private static String metadataCompleteValue(String tag) {
+        Matcher matcher = Pattern.compile("metadata-complete\\s*=\\s*([\"'])([^\"']*)\\1").matcher(tag);
+        return matcher.find() ? matcher.group(2) : null;
+    }
+
+    /**
+     * The metadata-complete value the web-app tag had before the goal set it, empty when it had none, or null when
+     * the generated block does not record that the goal set it.
+     */
+    private static String previousMetadataComplete(DescriptorWriter webXml) throws MojoExecutionException {
+        long mark = webXml.indexOf(METADATA_COMPLETE_MARK);
+        if (mark == -1 || mark < webXml.indexOf(START_MARK) || mark > webXml.indexOf(END_MARK)) {
+            return null;
+        }
+        try {
+            long end = webXml.tagEnd(mark);
+            if (end == -1) {
+                return null;
+            }
+            String comment = webXml.read(mark + METADATA_COMPLETE_MARK.length(), end);
+            Matcher matcher = Pattern.compile("^\"([^\"]*)\"").matcher(comment);
+            return matcher.find() ? matcher.group(1) : null;
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not read descriptor: " + e.getMessage(), e);
+        }
+    }
+
+    private static int servletMajorVersion(String tag) {
+        Matcher matcher = Pattern.compile("\\sversion\\s*=\\s*[\"'](\\d+)").matcher(tag);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+    }
+
+    private boolean generatesClasses() {
+        return URL_MAP_ROUTER.equals(urlMapMode) || URL_MAP_RESOURCE.equals(urlMapMode) || !StringUtils.isEmpty(factoryClass)
+                || !StringUtils.isEmpty(servletInitializerClass);
+    }
+
+    /**
+     * Sources go to a directory per target when there are several, as their generation runs at the same time.
+     */
+    private SourceCompiler newSourceCompiler(OutputTarget target) throws MojoExecutionException {
+        File sources = outputTargets.size() > 1 ? new File(generatedSourcesDirectory, target.getId()) : generatedSourcesDirectory;
+        return new SourceCompiler(getLog(), sources, target.getWebappClassDirectory(), levelOptions());
+    }
+
+    /**
+     * The language level of generated classes: compilerRelease or compilerTarget, else the maven-compiler-plugin
+     * configuration, else the maven.compiler properties. Without one the classes could be compiled for a newer JVM
+     * than the webapp runs on, so the goal fails.
+     */
+    private List<String> levelOptions() throws MojoExecutionException {
+        if (StringUtils.isNotBlank(compilerRelease) || StringUtils.isNotBlank(compilerTarget)) {
+            return SourceCompiler.levelOptions(compilerRelease, null, compilerTarget);
         }
+        List<String> options = SourceCompiler.levelOptions(compilerConfiguration("release"), compilerConfiguration("source"),
+                compilerConfiguration("target"));
+        if (options.isEmpty()) {
+            Properties properties = mavenProject.getProperties();
+            options = SourceCompiler.levelOptions(properties.getProperty("maven.compiler.release"),
+                    properties.getProperty("maven.compiler.source"), properties.getProperty("maven.compiler.target"));
+        }
+        if (options.isEmpty()) {
+            throw new MojoExecutionException("Could not determine the Java level of the generated classes,"
+                    + " set compilerRelease or compilerTarget");
+        }
+        return options;
+    }
+
+    /**
+     * A value of the maven-compiler-plugin configuration, from its default-compile execution or the plugin.
+     */
+    private String compilerConfiguration(String name) {
+        Plugin plugin = mavenProject.getPlugin("org.apache.maven.plugins:maven-compiler-plugin");
+        if (plugin == null) {
+            return null;
+        }
+        PluginExecution execution = plugin.getExecutionsAsMap().get("default-compile");
+        String value = execution != null ? configurationValue(execution.getConfiguration(), name) : null;
+        return value != null ? value : configurationValue(plugin.getConfiguration(), name);
+    }
+
+    private static String configurationValue(Object configuration, String name) {
+        if (!(configuration instanceof Xpp3Dom)) {
+            return null;
+        }
+        Xpp3Dom child = ((Xpp3Dom) configuration).getChild(name);
+        String value = child != null ? child.getValue() : null;
+        // an expression left uninterpolated is no level
+        return value != null && !value.trim().isEmpty() && !value.contains("${") ? value.trim() : null;
+    }
+
+    /**
+     * Files generated into the target's webapp, part of the output fingerprint.
+     */
+    private List<File> generatedFiles(OutputTarget target) {
+        List<File> files = new ArrayList<>();
+        File classes = target.getWebappClassDirectory();
+        if (URL_MAP_ROUTER.equals(urlMapMode)) {
+            files.add(new File(classes, routerClass.replace('.', '/') + ".class"));
+        } else if (URL_MAP_RESOURCE.equals(urlMapMode)) {
+            files.add(new File(target.getWebappClassDirectory(), UrlMapResource.RESOURCE));
+            files.add(new File(classes, urlMapClass.replace('.', '/') + ".class"));
+        }
+        if (!StringUtils.isEmpty(factoryClass)) {
+            files.add(new File(classes, factoryClass.replace('.', '/') + ".class"));
+        }
+        if (!StringUtils.isEmpty(servletInitializerClass)) {
+            files.add(new File(classes, servletInitializerClass.replace('.', '/') + ".class"));
+            files.add(new File(classes, ServletInitializerSource.SERVICE));
+        }
+        return files;
     }
 
     private void addSecurityMapping(String ls, StringBuilder str, String servletName, String... urlPatters) {
@@ -319,54 +1172,47 @@ public class WebXmlMojo extends AbstractMojo {
         str.append(ls);
     }
 
-    private void addServletMapping(String ls, StringBuilder str, String className, String servletName, String... urlPatterns) {
-        str.append("    <servlet>");
-        str.append("<servlet-name>");
-        str.append(servletName);
-        str.append("</servlet-name>");
-        str.append("<servlet-class>");
-        str.append(className);
-        str.append("</servlet-class>");
-        str.append("</servlet>");
-
-        //str.append(ls);
-        for (String urlPattern : urlPatterns) {
-            str.append("<servlet-mapping>");
-            str.append("<servlet-name>");
-            str.append(servletName);
-            str.append("</servlet-name>");
-            str.append("<url-pattern>");
-            str.append(urlPattern);
-            str.append("</url-pattern>");
-            str.append("</servlet-mapping>");
+    private static long requireMarker(DescriptorWriter descriptor, String marker) throws MojoExecutionException {
+        long position = descriptor.indexOf(marker);
+        if (position == -1) {
+            throw new MojoExecutionException(descriptor.getFile() + " has no " + marker);
         }
-        str.append(ls);
+        return position;
     }
 
-    private static String readFile(String file) throws IOException {
-        BufferedReader in = new BufferedReader(
-                new InputStreamReader(
-                        new FileInputStream(file), "UTF8")
-        );
-        String line;
-        StringBuilder stringBuilder = new StringBuilder();
-        String ls = System.getProperty("line.separator");
-
-        while ((line = in.readLine()) != null) {
-            stringBuilder.append(line);
-            stringBuilder.append(ls);
-        }
+    /**
+     * Makes every following execution scan incrementally with the class file scanner, keeping the class index in
+     * memory between them instead of reading it back from {@link #indexFile}. The fingerprint check is dropped:
+     * a watcher only runs the goal after a change, and walking the inputs would cost as much as the rescan.
+     */
+    void useWatchMode() {
+        incremental = true;
+        retainIndex = true;
+        skipUnchanged = false;
+    }
 
-        return stringBuilder.toString();
+    /**
+     * Forgets the scanned urls, so the next execution lists the class path again.
+     */
+    void resetClassPath() {
+        scanUrls = null;
     }
 
-    private static void writeFile(String fileName, String content) throws FileNotFoundException, UnsupportedEncodingException {
-        PrintWriter writer = new PrintWriter(fileName, "UTF-8");
-        writer.print(content);
-        writer.close();
+    /**
+     * The directories whose changes call for a new execution: the compiler output and the webapp's WEB-INF/lib.
+     */
+    List<File> watchedDirectories() {
+        return Arrays.asList(new File(mavenProject.getBuild().getOutputDirectory()), new File(resolveLibDirectory()));
     }
 
     private Set<URL> parseUrls() throws MojoExecutionException {
+        if (scanUrls == null) {
+            scanUrls = SCAN_CLASSPATH_ARTIFACTS.equals(scanClasspath) ? parseArtifactUrls() : parseWebappUrls();
+        }
+        return scanUrls;
+    }
+
+    private Set<URL> parseWebappUrls() throws MojoExecutionException {
         final Set<URL> urls = Sets.newHashSet();
         urls.addAll(parseOutputDirUrl());
         /*try {
@@ -391,6 +1237,50 @@ public class WebXmlMojo extends AbstractMojo {
         return urls;
     }
 
+    private Set<URL> parseArtifactUrls() throws MojoExecutionException {
+        ArtifactClasspath classpath = new ArtifactClasspath(getLog(), split(scanScopes), split(scanArtifacts),
+                split(excludeArtifacts), split(scanMarkers), pruneArtifacts);
+        List<File> files = classpath.resolve(mavenProject.getArtifacts());
+        getLog().info("Scan classpath: " + files.size() + " artifacts, " + classpath.getExcluded() + " excluded, "
+                + classpath.getPruned() + " pruned");
+        try {
+            final Set<URL> urls = Sets.newHashSet();
+            for (File file : files) {
+                urls.add(file.toURI().toURL());
+            }
+            urls.add(new File(resolveClassDirectory()).toURI().toURL());
+            return urls;
+        } catch (MalformedURLException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The rules compiled into a {@link ClassFilter}, or null when there are none.
+     */
+    private static ClassFilter compileFilter(String parameter, String rules) throws MojoExecutionException {
+        if (StringUtils.isEmpty(rules)) {
+            return null;
+        }
+        try {
+            return ClassFilter.parse(rules);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException("Invalid " + parameter + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static List<String> split(String value) {
+        List<String> values = new ArrayList<>();
+        if (!StringUtils.isEmpty(value)) {
+            for (String string : value.split(",")) {
+                if (!string.trim().isEmpty()) {
+                    values.add(string.trim());
+                }
+            }
+        }
+        return values;
+    }
+
     private Scanner[] parseScanners() throws MojoExecutionException {
         Set<Scanner> scannersSet = new HashSet<Scanner>(0);
 
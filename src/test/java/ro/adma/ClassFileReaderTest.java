@@ -0,0 +1,189 @@
+package ro.adma;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link ClassFileReader} against the javassist based {@link ClassSummary#parse}, on compiled classes and on class
+ * files whose long and double constants take two constant pool slots.
+ */
+public class ClassFileReaderTest {
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Mapping {
+        String[] value();
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Flag {
+        boolean value();
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Kind {
+        ElementType value();
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Type {
+        Class<?> value();
+    }
+
+    @Mapping({"/constants", "/constants/*"})
+    @Flag(true)
+    @Kind(ElementType.TYPE)
+    @Type(String[].class)
+    static class Constants extends ArrayList<String> implements Runnable, Serializable {
+        static final long LONG = 0x123456789abcdefL;
+        static final double DOUBLE = 2.5;
+        static final long OTHER_LONG = -1L;
+        static final String TEXT = "text";
+        static final int INT = 42;
+
+        private final Class<?>[] types = {Integer.class, List[].class};
+
+        public void run() {
+            Collections.sort(this);
+        }
+    }
+
+    static class Plain {
+    }
+
+    @Test
+    public void readsCompiledClassesLikeJavassist() throws IOException {
+        ClassFileReader reader = new ClassFileReader();
+        // the reader reuses its buffers, so the classes are read one after the other
+        for (Class<?> type : Arrays.asList(ClassFileReaderTest.class, Constants.class, Plain.class, Constants.class)) {
+            byte[] classFile = classFile(type);
+            assertSummary(ClassSummary.parse(new ByteArrayInputStream(classFile)),
+                    reader.read(new ByteArrayInputStream(classFile)));
+        }
+    }
+
+    @Test
+    public void readsAnnotationValues() throws IOException {
+        ClassSummary summary = new ClassFileReader().read(new ByteArrayInputStream(classFile(Constants.class)));
+        assertEquals(Arrays.asList("/constants", "/constants/*"), summary.getAnnotations().get(Mapping.class.getName()));
+        assertEquals(Collections.singletonList("true"), summary.getAnnotations().get(Flag.class.getName()));
+        assertEquals(Collections.singletonList("TYPE"), summary.getAnnotations().get(Kind.class.getName()));
+        assertEquals(Collections.singletonList("java.lang.String[]"), summary.getAnnotations().get(Type.class.getName()));
+    }
+
+    @Test
+    public void skipsSecondSlotOfLongConstants() throws IOException {
+        // the long's third byte sits where the primer's second constant began: a Class tag naming constant 3
+        assertSecondSlotSkipped(longConstant(0x0000070003000000L, false));
+    }
+
+    @Test
+    public void skipsSecondSlotOfDoubleConstants() throws IOException {
+        assertSecondSlotSkipped(longConstant(0x0000070003000000L, true));
+    }
+
+    private static void assertSecondSlotSkipped(byte[] classFile) throws IOException {
+        ClassFileReader reader = new ClassFileReader();
+        reader.load(new ByteArrayInputStream(primer()));
+        reader.load(new ByteArrayInputStream(classFile));
+        assertEquals(Arrays.asList("test.Fixture", "java.lang.Object"), reader.classReferences());
+        assertTrue(reader.references(new byte[][]{"test/Fixture".getBytes("UTF-8")}));
+        assertFalse(reader.references(new byte[][]{"test/Primer".getBytes("UTF-8")}));
+        assertSummary(ClassSummary.parse(new ByteArrayInputStream(classFile)), reader.summary(true));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        new ClassFileReader().read(new ByteArrayInputStream("not a class file".getBytes("UTF-8")));
+    }
+
+    private static void assertSummary(ClassSummary expected, ClassSummary actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getSuperName(), actual.getSuperName());
+        assertEquals(Arrays.asList(expected.getInterfaces()), Arrays.asList(actual.getInterfaces()));
+        assertEquals(expected.getAnnotations(), actual.getAnnotations());
+    }
+
+    private static byte[] classFile(Class<?> type) throws IOException {
+        String resource = "/" + type.getName().replace('.', '/') + ".class";
+        try (InputStream in = type.getResourceAsStream(resource)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * test.Primer, whose second constant starts at byte 13.
+     */
+    private static byte[] primer() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = header(bytes, 6);
+        out.writeByte(1);
+        out.writeUTF("");
+        out.writeByte(1);
+        out.writeUTF("test/Primer");
+        out.writeByte(7);
+        out.writeShort(2);
+        out.writeByte(1);
+        out.writeUTF("java/lang/Object");
+        out.writeByte(7);
+        out.writeShort(4);
+        body(out, 3, 5);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * test.Fixture, whose first constant is a long or double taking slots 1 and 2.
+     */
+    private static byte[] longConstant(long bits, boolean asDouble) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = header(bytes, 7);
+        out.writeByte(asDouble ? 6 : 5);
+        out.writeLong(bits);
+        out.writeByte(1);
+        out.writeUTF("test/Fixture");
+        out.writeByte(7);
+        out.writeShort(3);
+        out.writeByte(1);
+        out.writeUTF("java/lang/Object");
+        out.writeByte(7);
+        out.writeShort(5);
+        body(out, 4, 6);
+        return bytes.toByteArray();
+    }
+
+    private static DataOutputStream header(ByteArrayOutputStream bytes, int constantCount) throws IOException {
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(50);
+        out.writeShort(constantCount);
+        return out;
+    }
+
+    // a public class without interfaces, fields, methods or attributes
+    private static void body(DataOutputStream out, int thisClass, int superClass) throws IOException {
+        out.writeShort(0x21);
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.flush();
+    }
+}
@@ -0,0 +1,133 @@
+package ro.adma;
+
+import org.junit.Test;
+import org.reflections.util.FilterBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link ClassFilter} against the Reflections {@link FilterBuilder} it replaces, on the same rules and the dotted
+ * class file names the Reflections input filter was given.
+ */
+public class ClassFilterTest {
+    private static final String[] RULES = {
+            "",
+            "-java\\..*, -javax\\..*, -sun\\..*, -com\\.sun\\..*, +javax\\.servlet\\.http\\..*",
+            "+com\\.example\\..*, -com\\.example\\.internal\\..*",
+            "+com\\.example\\..*, -com\\.example\\.internal\\..*, +com\\.example\\.internal\\.api\\..*",
+            "-.*Test\\.class, +com\\..*",
+            "+.*\\.impl\\..*, -com\\.x\\..*",
+            "+com\\.ex[a-z]mple\\..*, -com\\.example\\.a\\..*",
+            "-com\\.example\\.Foo\\$.*",
+            "+.*",
+            // read as globs these would change meaning: the dots are any character, and the suffix is matched too
+            "-.*Test.*",
+            "-.*Test\\..*",
+            "-.*cla.*",
+            "-java.*",
+            "+com.example.*",
+            "+com.example.*, -com\\.example\\.a\\..*",
+            "+com\\.example\\.Foo",
+            "-com\\.example\\.Foo\\.c.*",
+            "-.*Foo$Inner.*",
+            "+.*\\$.*",
+            "-com\\.example\\..*Foo, +.*",
+    };
+
+    private static final String[] PACKAGES = {
+            "java/lang", "javax/servlet/http", "javax/servlet", "com/example", "com/example/internal",
+            "com/example/internal/api", "com/example/a", "com/exampleb", "com/x/impl", "com/y/impl", "org/apache",
+            "sun/misc", "com/sun/x", "net", "com/exbmple"
+    };
+
+    private static final String[] CLASSES = {"String", "Foo", "FooTest", "Foo$Inner", "HttpServlet", "Bar$1"};
+
+    @Test
+    public void matchesLikeFilterBuilder() {
+        for (String rules : RULES) {
+            ClassFilter filter = ClassFilter.parse(rules);
+            FilterBuilder expected = FilterBuilder.parse(rules);
+            for (String packagePath : PACKAGES) {
+                boolean packageRejected = filter.rejectsPackage(packagePath);
+                for (String subPackage : new String[]{"", "/deep/er"}) {
+                    for (String simpleName : CLASSES) {
+                        String path = packagePath + subPackage + "/" + simpleName + ".class";
+                        String className = (packagePath + subPackage + "/" + simpleName).replace('/', '.');
+                        boolean accepted = expected.apply(path.replace('/', '.'));
+                        String message = "[" + rules + "] " + path;
+                        assertEquals(message, accepted, filter.acceptsEntry(path));
+                        assertEquals(message, accepted, filter.acceptsClass(className));
+                        assertEquals(message, accepted, filter.apply(className));
+                        if (packageRejected) {
+                            assertFalse(message + " in a rejected package", accepted);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void acceptsOnlyClassFiles() {
+        ClassFilter filter = ClassFilter.parse("+.*");
+        assertTrue(filter.acceptsEntry("com/example/Foo.class"));
+        assertFalse(filter.acceptsEntry("com/example/foo.properties"));
+        assertFalse(filter.acceptsEntry("META-INF/MANIFEST.MF"));
+    }
+
+    @Test
+    public void skipsPackagesNoIncludeCanReach() {
+        ClassFilter filter = ClassFilter.parse("+com\\.example\\..*");
+        assertTrue(filter.rejectsPackage("org"));
+        assertFalse(filter.rejectsPackage("com"));
+        assertFalse(filter.rejectsPackage("com/example"));
+        assertFalse(filter.rejectsPackage("com/example/deep"));
+    }
+
+    @Test
+    public void excludingMatchesNamesPrefixesAndGlobs() {
+        ClassFilter filter = ClassFilter.excluding(Arrays.asList("com.*.internal.*", "com.example.Legacy*", "org.x.Exact",
+                "*Test", "com.x.Foo$Bar"));
+        assertFalse(filter.apply("com.a.internal.B"));
+        assertFalse(filter.apply("com.a.b.internal.C"));
+        assertTrue(filter.apply("com.internal.C"));
+        assertFalse(filter.apply("com.example.LegacyFoo"));
+        assertFalse(filter.apply("com.example.Legacy"));
+        assertTrue(filter.apply("com.example.Legac"));
+        assertFalse(filter.apply("org.x.Exact"));
+        assertTrue(filter.apply("org.x.Exact2"));
+        assertFalse(filter.apply("a.FooTest"));
+        assertTrue(filter.apply("a.Test.b"));
+        assertFalse(filter.apply("com.x.Foo$Bar"));
+        assertTrue(filter.apply("com.x.Foo"));
+        assertFalse(filter.acceptsEntry("com/a/internal/B.class"));
+        assertTrue(filter.acceptsEntry("com/x/Foo.class"));
+    }
+
+    @Test
+    public void excludingTakesAnyNumberOfRules() {
+        List<String> rules = new ArrayList<>();
+        for (int i = 0; i < 70; i++) {
+            rules.add("com.example.Excluded" + i);
+            rules.add("org.example" + i + ".*");
+        }
+        ClassFilter filter = ClassFilter.excluding(rules);
+        assertFalse(filter.apply("com.example.Excluded0"));
+        assertFalse(filter.apply("com.example.Excluded69"));
+        assertFalse(filter.acceptsEntry("com/example/Excluded69.class"));
+        assertTrue(filter.apply("com.example.Excluded70"));
+        assertFalse(filter.apply("org.example69.Foo"));
+        assertTrue(filter.apply("org.example70.Foo"));
+        assertTrue(filter.rejectsPackage("org/example42"));
+        assertFalse(filter.rejectsPackage("com/example"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRulesWithoutSign() {
+        ClassFilter.parse("com\\.example\\..*");
+    }
+}
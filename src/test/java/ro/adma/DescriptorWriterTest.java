@@ -0,0 +1,95 @@
+package ro.adma;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replacing the generated block between the descriptor markers.
+ */
+public class DescriptorWriterTest {
+    private static final String START_MARK = "<!-- Generated servlet mapping -->";
+    private static final String END_MARK = "<!-- End Generated servlet mapping -->";
+    private static final String INSERT_POINT = "</web-app>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replacesTheBlockBetweenTheMarkers() throws IOException {
+        File file = descriptor("<web-app>\n    <!-- café -->\n    " + START_MARK + "\n    <old/>\n    " + END_MARK + "\n</web-app>\n");
+        DescriptorWriter descriptor = DescriptorWriter.open(file, START_MARK, END_MARK);
+        assertTrue(write(descriptor, "\n    <servlet>é</servlet>\n"));
+        assertEquals("<web-app>\n    <!-- café -->\n    " + START_MARK + "\n    <servlet>é</servlet>\n    " + END_MARK + "\n</web-app>\n",
+                read(file));
+    }
+
+    @Test
+    public void leavesAnUnchangedBlockAlone() throws IOException {
+        String content = "<web-app>\n    " + START_MARK + "\n    <servlet/>\n    " + END_MARK + "\n</web-app>\n";
+        File file = descriptor(content);
+        assertTrue(file.setLastModified(1000000000000L));
+        assertFalse(write(DescriptorWriter.open(file, START_MARK, END_MARK), "\n    <servlet/>\n"));
+        assertEquals(content, read(file));
+        assertEquals(1000000000000L, file.lastModified());
+    }
+
+    @Test
+    public void insertsTheBlockWhenThereAreNoMarkers() throws IOException {
+        File file = descriptor("<web-app>\r\n    <servlet/>\r\n</web-app>\r\n");
+        DescriptorWriter descriptor = DescriptorWriter.open(file, START_MARK, END_MARK, INSERT_POINT);
+        assertFalse(descriptor.contains(START_MARK));
+        assertEquals(-1, descriptor.indexOf(END_MARK));
+        String ls = descriptor.getLineSeparator();
+        assertEquals("\r\n", ls);
+        long insertAt = descriptor.indexOf(INSERT_POINT);
+        assertTrue(descriptor.write(insertAt, "    " + START_MARK, ls + "    <generated/>" + ls, "    " + END_MARK + ls, insertAt));
+        assertEquals("<web-app>\r\n    <servlet/>\r\n    " + START_MARK + "\r\n    <generated/>\r\n    " + END_MARK + "\r\n</web-app>\r\n",
+                read(file));
+    }
+
+    @Test
+    public void appliesSeveralEditsInOneRewrite() throws IOException {
+        File file = descriptor("<web-app version=\"3.0\">\n    " + START_MARK + "\n    " + END_MARK + "\n</web-app>\n");
+        DescriptorWriter descriptor = DescriptorWriter.open(file, "<web-app", START_MARK, END_MARK);
+        long tagStart = descriptor.indexOf("<web-app");
+        long tagEnd = descriptor.tagEnd(tagStart);
+        assertEquals("<web-app version=\"3.0\">", descriptor.read(tagStart, tagEnd));
+        long blockStart = descriptor.indexOf(START_MARK) + START_MARK.length();
+        assertTrue(descriptor.write(Arrays.asList(
+                new DescriptorWriter.Edit(blockStart, descriptor.indexOf(END_MARK), "\n    <servlet/>\n", "    "),
+                new DescriptorWriter.Edit(tagStart, tagEnd, "<web-app version=\"3.0\" metadata-complete=\"true\">"))));
+        assertEquals("<web-app version=\"3.0\" metadata-complete=\"true\">\n    " + START_MARK + "\n    <servlet/>\n    " + END_MARK
+                + "\n</web-app>\n", read(file));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOverlappingEdits() throws IOException {
+        File file = descriptor("<web-app>\n    " + START_MARK + "\n    " + END_MARK + "\n</web-app>\n");
+        DescriptorWriter descriptor = DescriptorWriter.open(file, START_MARK, END_MARK);
+        descriptor.write(Arrays.asList(new DescriptorWriter.Edit(0, 20, "a"), new DescriptorWriter.Edit(10, 30, "b")));
+    }
+
+    private static boolean write(DescriptorWriter descriptor, String block) throws IOException {
+        return descriptor.write(descriptor.indexOf(START_MARK) + START_MARK.length(), "", block, "    ",
+                descriptor.indexOf(END_MARK));
+    }
+
+    private File descriptor(String content) throws IOException {
+        File file = folder.newFile("web.xml");
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}